@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.scijava.util.ClassUtils;
+
+/**
+ * Releases compiled classes from SciJava's caches of annotated members.
+ * <p>
+ * {@link ClassUtils} caches the annotated fields and methods of every class
+ * it is asked about (e.g. the {@code @Parameter} fields of a command) in
+ * static maps, with the class as a strong key. Classes compiled from scripts
+ * would hence never be unloaded once they were run as commands. Should the
+ * caches not be accessible, this class does nothing.
+ * </p>
+ * <p>
+ * Classes are released only once they are not going to be used anymore, i.e.
+ * when they are evicted from an engine's cache, when they were not cached in
+ * the first place, or when the engine caching them was garbage collected.
+ * {@link ClassUtils} populates its (unsynchronized) maps while holding the
+ * lock of the class in question; entries are removed while holding that
+ * lock, too, and one at a time.
+ * </p>
+ */
+class AnnotationCaches {
+
+	private static final Map<?, ?>[] CACHES;
+
+	static {
+		Map<?, ?>[] caches;
+		try {
+			caches = new Map<?, ?>[] { get("fieldCache"), get("methodCache") };
+		}
+		catch (final Exception e) {
+			// NB: Nothing to release, then.
+			caches = new Map<?, ?>[0];
+		}
+		CACHES = caches;
+	}
+
+	/** Serializes the removals. */
+	private static final Object LOCK = new Object();
+
+	private static final ReferenceQueue<Object> OWNERS =
+		new ReferenceQueue<Object>();
+
+	/** Keeps the {@link Owner} references themselves alive. */
+	private static final Set<Owner> TRACKED =
+		Collections.synchronizedSet(new HashSet<Owner>());
+
+	private static Thread releaser;
+
+	private AnnotationCaches() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Removes a class, and its superclasses defined by the same class loader,
+	 * from the caches. They are simply repopulated when needed again.
+	 * 
+	 * @param clazz the class to release
+	 */
+	static void release(final Class<?> clazz) {
+		if (clazz == null || CACHES.length == 0) return;
+		final ClassLoader loader = clazz.getClassLoader();
+		if (loader == null) return;
+		synchronized (LOCK) {
+			for (Class<?> c = clazz; c != null && c.getClassLoader() == loader; c =
+				c.getSuperclass())
+			{
+				// NB: ClassUtils populates the caches while holding the class' lock.
+				synchronized (c) {
+					for (final Map<?, ?> cache : CACHES) {
+						cache.remove(c);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Releases the classes held in the specified map once its owner was garbage
+	 * collected.
+	 * 
+	 * @param owner the owner of the map, e.g. a {@link JavaEngine}
+	 * @param classes the classes, as values of a synchronized map
+	 */
+	static void track(final Object owner, final Map<?, Class<?>> classes) {
+		if (CACHES.length == 0) return;
+		TRACKED.add(new Owner(owner, classes));
+		synchronized (AnnotationCaches.class) {
+			if (releaser != null) return;
+			releaser = new Thread("JavaEngine annotation cache releaser") {
+
+				@Override
+				public void run() {
+					for (;;) {
+						try {
+							final Reference<?> reference = OWNERS.remove();
+							TRACKED.remove(reference);
+							((Owner) reference).release();
+						}
+						catch (final InterruptedException e) {
+							// NB: Keep going; this is a daemon thread.
+						}
+					}
+				}
+			};
+			releaser.setDaemon(true);
+			releaser.start();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static Map<?, ?> get(final String name) throws Exception {
+		final Field field = ClassUtils.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return (Map<?, ?>) field.get(null);
+	}
+
+	/** A weakly referenced owner, and the classes to release after it. */
+	private static class Owner extends WeakReference<Object> {
+
+		private final Map<?, Class<?>> classes;
+
+		private Owner(final Object owner, final Map<?, Class<?>> classes) {
+			super(owner, OWNERS);
+			this.classes = classes;
+		}
+
+		private void release() {
+			final List<Class<?>> list;
+			synchronized (classes) {
+				list = new ArrayList<Class<?>>(classes.values());
+			}
+			for (final Class<?> clazz : list) {
+				AnnotationCaches.release(clazz);
+			}
+		}
+	}
+
+}
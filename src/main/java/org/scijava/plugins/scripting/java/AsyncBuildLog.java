@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.scijava.util.LineOutputStream;
+
+/**
+ * Forwards build output to a {@link Writer} without blocking the build.
+ * <p>
+ * Lines are put into a bounded ring buffer and written in batches by a
+ * background thread, so that slow consumers (e.g. a script editor's console,
+ * or a remote log) do not hold up the build itself. When the buffer
+ * overflows, further lines are dropped; the number of dropped lines is
+ * reported in their stead, in order, as soon as there is room again.
+ * </p>
+ * <p>
+ * The owner of the log is expected to {@link #close()} it and to wait for
+ * the output to be {@link #awaitDrained(long) drained} before handing
+ * control back to its caller, so that callers see the complete output.
+ * </p>
+ */
+class AsyncBuildLog extends LineOutputStream {
+
+	/** The number of lines to buffer before dropping lines. */
+	private static final int CAPACITY = 4096;
+
+	/** The maximal number of lines to write in one go. */
+	private static final int BATCH_SIZE = 256;
+
+	private static final ExecutorService DRAINERS = new ThreadPoolExecutor(0,
+		Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+		new ThreadFactory()
+		{
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "JavaEngine build log-" +
+					count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	/** How long to wait for the output to be drained, in milliseconds. */
+	static final long DRAIN_TIMEOUT = 5000;
+
+	private final Writer writer;
+	private final BlockingQueue<String> lines =
+		new ArrayBlockingQueue<String>(CAPACITY);
+	private final AtomicInteger dropped = new AtomicInteger();
+	private final AtomicBoolean draining = new AtomicBoolean();
+	private final CountDownLatch drained = new CountDownLatch(1);
+	private volatile boolean closed;
+
+	/**
+	 * @param writer the destination of the build output
+	 */
+	AsyncBuildLog(final Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void println(final String line) {
+		final int droppedLines = dropped.get();
+		if (droppedLines > 0) {
+			// report the dropped lines where they were dropped
+			if (!lines.offer(droppedMarker(droppedLines))) {
+				dropped.incrementAndGet();
+				scheduleDrain();
+				return;
+			}
+			dropped.addAndGet(-droppedLines);
+		}
+		if (!lines.offer(line)) dropped.incrementAndGet();
+		scheduleDrain();
+	}
+
+	/**
+	 * Flushes any incomplete line and stops accepting output. The buffered lines
+	 * are still written in the background.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		flush();
+		closed = true;
+		scheduleDrain();
+	}
+
+	/**
+	 * Waits until all output has been written after {@link #close()}.
+	 * 
+	 * @param timeout the maximal time to wait, in milliseconds
+	 * @return whether all output was written
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean awaitDrained(final long timeout) throws InterruptedException {
+		return drained.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	// -- Helper methods --
+
+	private void scheduleDrain() {
+		if (draining.compareAndSet(false, true)) DRAINERS.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+		});
+	}
+
+	private static String droppedMarker(final int count) {
+		return "[... " + count + " line(s) of build output dropped ...]";
+	}
+
+	private void drain() {
+		final StringBuilder batch = new StringBuilder();
+		for (;;) {
+			batch.setLength(0);
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				final String line = lines.poll();
+				if (line == null) break;
+				batch.append(line).append('\n');
+			}
+			if (batch.length() == 0 && closed) {
+				// the last lines were dropped
+				final int droppedLines = dropped.getAndSet(0);
+				if (droppedLines > 0) {
+					batch.append(droppedMarker(droppedLines)).append('\n');
+				}
+			}
+			if (batch.length() > 0) {
+				try {
+					writer.append(batch);
+					writer.flush();
+				}
+				catch (final IOException e) {
+					// NB: Nowhere to report the build output's failure.
+				}
+				continue;
+			}
+			// nothing left; make sure no line slipped in before giving up
+			draining.set(false);
+			if (lines.isEmpty() || !draining.compareAndSet(false, true)) {
+				if (closed && lines.isEmpty() && dropped.get() == 0) {
+					drained.countDown();
+				}
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a script repeatedly to measure its performance, as requested via the
+ * {@value JavaEngine#BENCHMARK} binding.
+ * <p>
+ * The warm-up iterations give the JIT compiler the chance to optimize the
+ * script before the measured iterations are timed. All iterations run the
+ * same class, in the same class loader.
+ * </p>
+ * <p>
+ * Allocations are measured on the current thread. They are reported as
+ * unavailable for scripts that run elsewhere, such as
+ * {@link org.scijava.command.Command}s, which run on SciJava's thread pool.
+ * </p>
+ */
+class Benchmark {
+
+	private final int warmups;
+	private final int iterations;
+
+	/**
+	 * @param warmups the number of iterations to run before measuring
+	 * @param iterations the number of iterations to measure
+	 */
+	Benchmark(final int warmups, final int iterations) {
+		if (warmups < 0 || iterations < 1) {
+			throw new IllegalArgumentException("Invalid iterations: " + warmups +
+				", " + iterations);
+		}
+		this.warmups = warmups;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Parses the value of the {@value JavaEngine#BENCHMARK} binding.
+	 * 
+	 * @param value the number of measured iterations, or the numbers of warm-up
+	 *          and measured iterations separated by a comma (e.g. {@code 10,50})
+	 * @return the benchmark; without an explicit number of warm-up iterations,
+	 *         as many warm-up iterations are run as are measured
+	 * @throws IllegalArgumentException if the value cannot be parsed
+	 */
+	static Benchmark parse(final Object value) {
+		final String[] parts = value.toString().trim().split("\\s*,\\s*");
+		try {
+			if (parts.length == 1) {
+				final int iterations = Integer.parseInt(parts[0]);
+				return new Benchmark(iterations, iterations);
+			}
+			if (parts.length == 2) {
+				return new Benchmark(Integer.parseInt(parts[0]), Integer.parseInt(
+					parts[1]));
+			}
+		}
+		catch (final NumberFormatException e) {
+			// NB: Report the whole value below.
+		}
+		throw new IllegalArgumentException("Invalid benchmark: '" + value +
+			"'; expected <iterations> or <warm-up iterations>,<iterations>");
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param name the name of the script
+	 * @param iteration runs the script once
+	 * @param onCurrentThread whether the script runs on the current thread;
+	 *          otherwise, its allocations cannot be measured
+	 * @return the measurements
+	 * @throws Exception if an iteration failed
+	 */
+	BenchmarkResult run(final String name, final Callable<Object> iteration,
+		final boolean onCurrentThread) throws Exception
+	{
+		Object result = null;
+		for (int i = 0; i < warmups; i++) {
+			result = iteration.call();
+		}
+		final long[] times = new long[iterations];
+		long allocated = onCurrentThread ? 0 : -1;
+		for (int i = 0; i < iterations; i++) {
+			final long before = ThreadUsage.allocatedBytes();
+			final long start = System.nanoTime();
+			result = iteration.call();
+			times[i] = System.nanoTime() - start;
+			final long after = ThreadUsage.allocatedBytes();
+			if (before < 0 || after < 0) allocated = -1;
+			else if (allocated >= 0) allocated += after - before;
+		}
+		return new BenchmarkResult(name, warmups, times, allocated, result);
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The measurements of a script run in benchmark mode, as returned by
+ * {@link JavaEngine#eval(String)} when the {@value JavaEngine#BENCHMARK}
+ * binding is set.
+ * <p>
+ * Times are reported in milliseconds per iteration.
+ * </p>
+ */
+public class BenchmarkResult {
+
+	private final String name;
+	private final int warmups;
+	private final long[] sorted;
+	private final long total;
+	private final long allocated;
+	private final Object lastResult;
+
+	/**
+	 * @param name the name of the script
+	 * @param warmups the number of warm-up iterations
+	 * @param times the times of the measured iterations, in nanoseconds
+	 * @param allocated the bytes allocated by all measured iterations, or -1
+	 * @param lastResult the return value of the last iteration
+	 */
+	BenchmarkResult(final String name, final int warmups, final long[] times,
+		final long allocated, final Object lastResult)
+	{
+		this.name = name;
+		this.warmups = warmups;
+		sorted = times.clone();
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (final long time : times) {
+			sum += time;
+		}
+		total = sum;
+		this.allocated = allocated;
+		this.lastResult = lastResult;
+	}
+
+	/** @return the name of the script's class */
+	public String getName() {
+		return name;
+	}
+
+	/** @return the number of iterations run before measuring */
+	public int getWarmupIterations() {
+		return warmups;
+	}
+
+	/** @return the number of measured iterations */
+	public int getIterations() {
+		return sorted.length;
+	}
+
+	/** @return the mean time */
+	public double getMean() {
+		return millis(total) / sorted.length;
+	}
+
+	/** @return the shortest time */
+	public double getMin() {
+		return millis(sorted[0]);
+	}
+
+	/** @return the median time */
+	public double getMedian() {
+		return getPercentile(50);
+	}
+
+	/**
+	 * Gets a percentile of the measured times (nearest rank).
+	 * 
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the time
+	 */
+	public double getPercentile(final double percentile) {
+		final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return millis(sorted[Math.min(Math.max(rank, 1), sorted.length) - 1]);
+	}
+
+	/** @return the longest time */
+	public double getMax() {
+		return millis(sorted[sorted.length - 1]);
+	}
+
+	/**
+	 * @return the mean number of bytes allocated per iteration by the running
+	 *         thread, or -1 if the JVM does not measure allocations or if the
+	 *         script ran on another thread, e.g. as a
+	 *         {@link org.scijava.command.Command}
+	 */
+	public double getAllocatedBytes() {
+		return allocated < 0 ? -1 : (double) allocated / sorted.length;
+	}
+
+	/** @return the return value of the last iteration */
+	public Object getLastResult() {
+		return lastResult;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(String.format(Locale.ENGLISH,
+			"Benchmark %s: %d iterations after %d warm-up iterations%n", name,
+			getIterations(), warmups));
+		builder.append(String.format(Locale.ENGLISH,
+			"  mean %.3f ms, min %.3f ms, median %.3f ms, p90 %.3f ms, " +
+				"p99 %.3f ms, max %.3f ms", getMean(), getMin(), getMedian(),
+			getPercentile(90), getPercentile(99), getMax()));
+		if (allocated >= 0) {
+			builder.append(String.format(Locale.ENGLISH,
+				"%n  allocated %.0f bytes per iteration", getAllocatedBytes()));
+		}
+		return builder.toString();
+	}
+
+	// -- Helper methods --
+
+	private static double millis(final long nanos) {
+		return nanos / 1e6;
+	}
+
+}
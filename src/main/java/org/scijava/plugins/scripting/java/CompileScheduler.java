@@ -0,0 +1,269 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.PriorityQueue;
+
+import javax.script.ScriptException;
+
+/**
+ * Limits the number of compilations running at the same time in this JVM.
+ * <p>
+ * {@code javac} needs a lot of memory; dozens of concurrent compiles make the
+ * heap spike and the garbage collector thrash. Compiles therefore need to be
+ * admitted by this scheduler: at most {@link #getMaxConcurrent()} run at the
+ * same time, and optionally only while at least {@link #getMinFreeHeap()}
+ * bytes of the heap are available (a single compile is always admitted, to
+ * guarantee progress). The others wait in a bounded queue, by
+ * {@link Priority} and then in order of arrival; compiles arriving while the
+ * queue is full are rejected.
+ * </p>
+ */
+public class CompileScheduler {
+
+	/** The priority of a compile, in decreasing order. */
+	public enum Priority {
+		/** A compile somebody is waiting for, e.g. in a script editor. */
+		INTERACTIVE,
+		/** A compile in a batch of scripts. */
+		BATCH;
+
+		/**
+		 * Looks up a priority by name, ignoring case.
+		 * 
+		 * @param name the name of the priority, e.g. {@code batch}
+		 * @return the priority
+		 * @throws IllegalArgumentException if there is no priority of that name
+		 */
+		public static Priority forName(final String name) {
+			for (final Priority priority : values()) {
+				if (priority.name().equalsIgnoreCase(name)) return priority;
+			}
+			throw new IllegalArgumentException("Unknown compile priority: " + name);
+		}
+	}
+
+	/** How often to check whether the heap recovered, in milliseconds. */
+	private static final long HEAP_POLL_INTERVAL = 100;
+
+	private static CompileScheduler defaultScheduler;
+
+	private final PriorityQueue<Ticket> queue = new PriorityQueue<Ticket>();
+	private int maxConcurrent;
+	private int maxQueued;
+	private long minFreeHeap;
+	private int running;
+	private long sequence;
+
+	private long admitted, rejected, totalWait, maxWait;
+
+	/**
+	 * @param maxConcurrent the maximal number of concurrent compiles
+	 * @param maxQueued the maximal number of compiles waiting to be admitted
+	 */
+	CompileScheduler(final int maxConcurrent, final int maxQueued) {
+		setMaxConcurrent(maxConcurrent);
+		setMaxQueued(maxQueued);
+	}
+
+	/**
+	 * Gets the scheduler shared by all {@link JavaEngine}s.
+	 * <p>
+	 * By default, it admits as many compiles as there are processors, and
+	 * queues up to 256 more, regardless of the available heap.
+	 * </p>
+	 * 
+	 * @return the scheduler
+	 */
+	public static synchronized CompileScheduler getDefault() {
+		if (defaultScheduler == null) {
+			defaultScheduler = new CompileScheduler(Runtime.getRuntime()
+				.availableProcessors(), 256);
+		}
+		return defaultScheduler;
+	}
+
+	// -- CompileScheduler methods --
+
+	/** @return the maximal number of concurrent compiles */
+	public synchronized int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/** @param maxConcurrent the maximal number of concurrent compiles */
+	public synchronized void setMaxConcurrent(final int maxConcurrent) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("Need at least one compile");
+		}
+		this.maxConcurrent = maxConcurrent;
+		notifyAll();
+	}
+
+	/** @return the maximal number of compiles waiting to be admitted */
+	public synchronized int getMaxQueued() {
+		return maxQueued;
+	}
+
+	/** @param maxQueued the maximal number of compiles waiting to be admitted */
+	public synchronized void setMaxQueued(final int maxQueued) {
+		this.maxQueued = Math.max(0, maxQueued);
+	}
+
+	/** @return the heap to be available to admit a compile, in bytes */
+	public synchronized long getMinFreeHeap() {
+		return minFreeHeap;
+	}
+
+	/**
+	 * Sets the heap to be available to admit more than one compile.
+	 * 
+	 * @param minFreeHeap the minimal free heap, in bytes, or 0 to ignore the
+	 *          heap
+	 */
+	public synchronized void setMinFreeHeap(final long minFreeHeap) {
+		this.minFreeHeap = Math.max(0, minFreeHeap);
+		notifyAll();
+	}
+
+	/** @return the number of compiles running */
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	/** @return the number of compiles waiting to be admitted */
+	public synchronized int getQueued() {
+		return queue.size();
+	}
+
+	/** @return the number of compiles rejected because the queue was full */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	/** @return the average time compiles waited to be admitted, in ms */
+	public synchronized double getAverageWaitTime() {
+		return admitted == 0 ? 0 : totalWait / 1e6 / admitted;
+	}
+
+	/** @return the longest time a compile waited to be admitted, in ms */
+	public synchronized double getMaxWaitTime() {
+		return maxWait / 1e6;
+	}
+
+	/**
+	 * Waits until a compile is admitted. Every admitted compile must
+	 * {@link #release()} its slot when it is done.
+	 * 
+	 * @param priority the priority of the compile
+	 * @throws ScriptException if the queue is full, or if interrupted while
+	 *           waiting
+	 */
+	synchronized void acquire(final Priority priority) throws ScriptException {
+		final long start = System.nanoTime();
+		if (queue.isEmpty() && canAdmit()) {
+			admit(start);
+			return;
+		}
+		if (queue.size() >= maxQueued) {
+			rejected++;
+			throw new ScriptException("Too many compilations waiting (" +
+				queue.size() + ")");
+		}
+		final Ticket ticket = new Ticket(priority, sequence++);
+		queue.add(ticket);
+		try {
+			while (queue.peek() != ticket || !canAdmit()) {
+				// poll the heap, as the garbage collector does not notify us
+				if (minFreeHeap > 0) wait(HEAP_POLL_INTERVAL);
+				else wait();
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScriptException("Interrupted while waiting to compile");
+		}
+		finally {
+			queue.remove(ticket);
+			// the next one in line might be admitted, too
+			notifyAll();
+		}
+		admit(start);
+	}
+
+	/** Releases the slot of an admitted compile. */
+	synchronized void release() {
+		running--;
+		notifyAll();
+	}
+
+	// -- Helper methods --
+
+	private boolean canAdmit() {
+		if (running >= maxConcurrent) return false;
+		if (running == 0 || minFreeHeap == 0) return true;
+		final Runtime runtime = Runtime.getRuntime();
+		final long used = runtime.totalMemory() - runtime.freeMemory();
+		return runtime.maxMemory() - used >= minFreeHeap;
+	}
+
+	private void admit(final long start) {
+		running++;
+		admitted++;
+		final long wait = System.nanoTime() - start;
+		totalWait += wait;
+		maxWait = Math.max(maxWait, wait);
+	}
+
+	// -- Helper classes --
+
+	/** A compile waiting to be admitted. */
+	private static class Ticket implements Comparable<Ticket> {
+
+		private final Priority priority;
+		private final long sequence;
+
+		private Ticket(final Priority priority, final long sequence) {
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final Ticket other) {
+			final int result = priority.compareTo(other.priority);
+			if (result != 0) return result;
+			return sequence < other.sequence ? -1 : sequence > other.sequence ? 1
+				: 0;
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Named sets of compiler settings for the {@link JavaEngine}.
+ * <p>
+ * The profile is chosen via {@link JavaEngine#setProfile(CompilerProfile)}
+ * (or {@link JavaScriptLanguage#setProfile(CompilerProfile)} for all engines
+ * of a language), and can be overridden per engine via the
+ * {@value JavaEngine#PROFILE} binding, using the profile's name.
+ * </p>
+ * <p>
+ * Except for {@link #DEFAULT}, the profiles compile single-file scripts
+ * directly, without packaging them into a {@code .jar} file.
+ * </p>
+ */
+public enum CompilerProfile {
+
+	/**
+	 * Builds with MiniMaven's defaults: annotation processing, default debug
+	 * information, packaged as a {@code .jar} file.
+	 */
+	DEFAULT(),
+
+	/**
+	 * Compiles as quickly as possible: no annotation processing, no implicit
+	 * compilation of referenced sources, no debug information.
+	 */
+	FAST("-proc:none", "-implicit:none", "-g:none"),
+
+	/**
+	 * Compiles with full debug information, including local variables.
+	 */
+	DEBUG("-g");
+
+	private final List<String> options;
+
+	private CompilerProfile(final String... options) {
+		this.options = Collections.unmodifiableList(Arrays.asList(options));
+	}
+
+	/**
+	 * @return the options to pass to {@code javac}
+	 */
+	public List<String> getOptions() {
+		return options;
+	}
+
+	/**
+	 * @return whether the profile builds via MiniMaven rather than directly
+	 */
+	public boolean isMiniMaven() {
+		return this == DEFAULT;
+	}
+
+	/**
+	 * Looks up a profile by name, ignoring case.
+	 * 
+	 * @param name the name of the profile, e.g. {@code fast}
+	 * @return the profile
+	 * @throws IllegalArgumentException if there is no profile of that name
+	 */
+	public static CompilerProfile forName(final String name) {
+		for (final CompilerProfile profile : values()) {
+			if (profile.name().equalsIgnoreCase(name)) return profile;
+		}
+		throw new IllegalArgumentException("Unknown compiler profile: " + name);
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.script.ScriptException;
+
+import org.scijava.minimaven.Coordinate;
+
+/**
+ * Parses and caches the dependencies declared by a script.
+ * <p>
+ * A script can declare its dependencies in comment lines of the form
+ * </p>
+ * 
+ * <pre>
+ * //DEPS net.imglib2:imglib2:6.1.0 org.scijava:scijava-common:2.99.2
+ * </pre>
+ * <p>
+ * in which case only those dependencies (and their transitive dependencies,
+ * resolved from the local Maven repository) are put on the class path,
+ * instead of everything on the current class path. Once resolved, the files
+ * making up a set of dependencies are remembered, so that subsequent scripts
+ * declaring the same dependencies do not need to walk the repository again.
+ * </p>
+ */
+class DeclaredDependencies {
+
+	private static final String PREFIX = "//DEPS";
+
+	/** The resolved class path elements, by {@link #key}. */
+	private static final Map<String, List<File>> RESOLVED =
+		new ConcurrentHashMap<String, List<File>>();
+
+	private DeclaredDependencies() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Parses the dependencies declared in the specified source file.
+	 * 
+	 * @param file the {@code .java} file
+	 * @return the declared dependencies, or null if none were declared
+	 * @throws ScriptException if a declaration is not of the form
+	 *           {@code groupId:artifactId:version}
+	 */
+	static List<Coordinate> parse(final File file) throws IOException,
+		ScriptException
+	{
+		return parse(new BufferedReader(new FileReader(file)), file.getName());
+	}
+
+	/**
+	 * Parses the dependencies declared in the specified source code.
+	 * 
+	 * @param reader the source code; it is closed by this method
+	 * @param name the name of the source to report errors for
+	 * @return the declared dependencies, or null if none were declared
+	 * @throws ScriptException if a declaration is not of the form
+	 *           {@code groupId:artifactId:version}
+	 */
+	static List<Coordinate> parse(final BufferedReader reader,
+		final String name) throws IOException, ScriptException
+	{
+		List<Coordinate> result = null;
+		try {
+			int lineNumber = 0;
+			for (;;) {
+				final String line = reader.readLine();
+				if (line == null) break;
+				lineNumber++;
+				final String trimmed = line.trim();
+				if (!trimmed.startsWith(PREFIX)) continue;
+				if (result == null) result = new ArrayList<Coordinate>();
+				for (final String gav : trimmed.substring(PREFIX.length()).trim()
+					.split("[\\s,]+"))
+				{
+					if (gav.isEmpty()) continue;
+					final String[] parts = gav.split(":");
+					if (parts.length != 3) {
+						throw new ScriptException("Invalid dependency '" + gav +
+							"'; expected groupId:artifactId:version", name, lineNumber);
+					}
+					result.add(new Coordinate(parts[0], parts[1], parts[2]));
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the previously resolved class path elements for a set of
+	 * dependencies.
+	 * 
+	 * @param dependencies the declared dependencies
+	 * @return the {@code .jar} files, or null if not resolved yet
+	 */
+	static List<File> getResolved(final List<Coordinate> dependencies) {
+		final List<File> files = RESOLVED.get(key(dependencies));
+		if (files == null) return null;
+		for (final File file : files) {
+			// the local repository was cleaned up in the meantime
+			if (!file.exists()) return null;
+		}
+		return files;
+	}
+
+	/**
+	 * Remembers the resolved class path elements for a set of dependencies.
+	 * 
+	 * @param dependencies the declared dependencies
+	 * @param files the class path elements they resolved to
+	 */
+	static void setResolved(final List<Coordinate> dependencies,
+		final List<File> files)
+	{
+		RESOLVED.put(key(dependencies), Collections.unmodifiableList(
+			new ArrayList<File>(files)));
+	}
+
+	/**
+	 * Builds a key identifying a set of dependencies regardless of the order of
+	 * declaration.
+	 */
+	private static String key(final List<Coordinate> dependencies) {
+		final TreeSet<String> gavs = new TreeSet<String>();
+		for (final Coordinate coordinate : dependencies) {
+			gavs.add(coordinate.getGAV());
+		}
+		return gavs.toString();
+	}
+
+}
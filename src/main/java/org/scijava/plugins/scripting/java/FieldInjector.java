@@ -0,0 +1,237 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.scijava.convert.ConvertService;
+import org.scijava.plugin.Parameter;
+
+/**
+ * Injects values, typically from the engine scope bindings, into the fields of
+ * compiled script classes.
+ * <p>
+ * Only fields declared by classes defined by the script's class loader are
+ * set; fields inherited from JDK or library classes are left alone.
+ * </p>
+ * <p>
+ * One injector is generated per class, holding a setter {@link MethodHandle}
+ * for each assignable field. The injectors are stored in a {@link ClassValue}
+ * so that repeated injections only cost a hash lookup per value, and so that
+ * they do not prevent the script classes from being unloaded.
+ * </p>
+ */
+class FieldInjector {
+
+	private static final ClassValue<FieldInjector> INJECTORS =
+		new ClassValue<FieldInjector>()
+		{
+
+			@Override
+			protected FieldInjector computeValue(final Class<?> type) {
+				return new FieldInjector(type);
+			}
+		};
+
+	private final Map<String, Setter> staticFields;
+	private final Map<String, Setter> instanceFields;
+
+	private FieldInjector(final Class<?> clazz) {
+		final Map<String, Setter> statics = new HashMap<String, Setter>();
+		final Map<String, Setter> instances = new HashMap<String, Setter>();
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		// only the script's own fields: not those of JDK or library classes
+		final ClassLoader loader = clazz.getClassLoader();
+		for (Class<?> c = clazz; c != null && loader != null && c
+			.getClassLoader() == loader; c = c.getSuperclass())
+		{
+			for (final Field field : c.getDeclaredFields()) {
+				final int modifiers = field.getModifiers();
+				if (Modifier.isFinal(modifiers) || field.isSynthetic()) continue;
+				final boolean isStatic = Modifier.isStatic(modifiers);
+				final Map<String, Setter> map = isStatic ? statics : instances;
+				// fields of subclasses shadow those of their superclasses
+				if (map.containsKey(field.getName())) continue;
+				try {
+					if (!field.isAccessible()) field.setAccessible(true);
+					map.put(field.getName(), new Setter(field, lookup.unreflectSetter(
+						field)));
+				}
+				catch (final IllegalAccessException e) {
+					// NB: Skip inaccessible fields.
+				}
+				catch (final SecurityException e) {
+					// NB: Skip inaccessible fields.
+				}
+				catch (final RuntimeException e) {
+					// NB: Skip fields of modules that are not open to us.
+				}
+			}
+		}
+		staticFields = statics;
+		instanceFields = instances;
+	}
+
+	/**
+	 * Gets the (cached) injector for the specified class.
+	 * 
+	 * @param clazz the class whose fields are to be set
+	 * @return the injector
+	 */
+	static FieldInjector get(final Class<?> clazz) {
+		return INJECTORS.get(clazz);
+	}
+
+	/**
+	 * Sets the static fields whose names match keys of the given map.
+	 * 
+	 * @param values the values to inject, by field name
+	 * @param convertService the service to convert values that are not directly
+	 *          assignable, or null
+	 */
+	void injectStatic(final Map<String, ?> values,
+		final ConvertService convertService)
+	{
+		inject(staticFields, null, values, convertService);
+	}
+
+	/**
+	 * Sets the instance fields whose names match keys of the given map.
+	 * 
+	 * @param instance the object whose fields to set
+	 * @param values the values to inject, by field name
+	 * @param convertService the service to convert values that are not directly
+	 *          assignable, or null
+	 */
+	void injectInstance(final Object instance, final Map<String, ?> values,
+		final ConvertService convertService)
+	{
+		inject(instanceFields, instance, values, convertService);
+	}
+
+	/**
+	 * Selects the values destined for the instance fields annotated with
+	 * {@link Parameter}.
+	 * <p>
+	 * These are the inputs to pass when the class is run as a module.
+	 * </p>
+	 * 
+	 * @param values the candidate values, by field name
+	 * @return the values matching {@link Parameter} fields
+	 */
+	Map<String, Object> getParameterInputs(final Map<String, ?> values) {
+		Map<String, Object> result = null;
+		for (final Map.Entry<String, ?> entry : values.entrySet()) {
+			final Setter setter = instanceFields.get(entry.getKey());
+			if (setter == null || !setter.isParameter) continue;
+			if (result == null) result = new LinkedHashMap<String, Object>();
+			result.put(entry.getKey(), entry.getValue());
+		}
+		if (result == null) return Collections.emptyMap();
+		return result;
+	}
+
+	private static void inject(final Map<String, Setter> setters,
+		final Object instance, final Map<String, ?> values,
+		final ConvertService convertService)
+	{
+		if (setters.isEmpty()) return;
+		for (final Map.Entry<String, ?> entry : values.entrySet()) {
+			final Setter setter = setters.get(entry.getKey());
+			if (setter == null) continue;
+			setter.set(instance, entry.getValue(), convertService);
+		}
+	}
+
+	/** A setter for a single field, adapted to take {@link Object}s. */
+	private static class Setter {
+
+		private final Field field;
+		private final Class<?> type;
+		private final boolean isParameter;
+		private final MethodHandle handle;
+
+		private Setter(final Field field, final MethodHandle handle) {
+			this.field = field;
+			type = MethodDispatcher.wrap(field.getType());
+			isParameter = field.isAnnotationPresent(Parameter.class);
+			if (Modifier.isStatic(field.getModifiers())) {
+				// ignore the (absent) instance argument
+				this.handle = MethodHandles.dropArguments(handle.asType(MethodType
+					.methodType(void.class, Object.class)), 0, Object.class);
+			}
+			else {
+				this.handle = handle.asType(MethodType.methodType(void.class,
+					Object.class, Object.class));
+			}
+		}
+
+		private void set(final Object instance, final Object value,
+			final ConvertService convertService)
+		{
+			Object converted = value;
+			if (value == null) {
+				if (field.getType().isPrimitive()) return;
+			}
+			else if (!type.isInstance(value)) {
+				converted = convertService == null ? null : convertService.convert(
+					value, field.getGenericType());
+				if (converted == null) {
+					throw new IllegalArgumentException("Cannot assign " + value +
+						" to field " + field);
+				}
+			}
+			try {
+				handle.invokeExact(instance, converted);
+			}
+			catch (final RuntimeException e) {
+				throw e;
+			}
+			catch (final Error e) {
+				throw e;
+			}
+			catch (final Throwable t) {
+				throw new IllegalArgumentException("Could not set field " + field, t);
+			}
+		}
+	}
+
+}
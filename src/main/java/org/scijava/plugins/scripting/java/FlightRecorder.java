@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits Java Flight Recorder events for the phases of compiling and running
+ * scripts.
+ * <p>
+ * Every event carries the script's identity, the same one that
+ * {@link ScriptAccounting} uses (its file name, or the hash of its source),
+ * the subject of the phase (e.g. a class name or an artifact ID), the number
+ * of class path entries involved, and the outcome. The script is set per
+ * thread via {@link #setScript(Object)}, for the phases deep down in the
+ * build to pick it up. The event types are
+ * defined at runtime via {@code jdk.jfr.EventFactory}, as this component still
+ * targets Java 8; on JVMs without that API, no events are emitted. While no
+ * recording is active, {@link EventType#begin()} returns null after asking
+ * the event type whether it is enabled, without creating an event, and
+ * callers skip all further work.
+ * </p>
+ */
+class FlightRecorder {
+
+	private static final String PREFIX = "org.scijava.java.";
+	private static final String[] CATEGORY = { "SciJava", "Java Scripting" };
+
+	/** The script being processed by the current thread. */
+	private static final ThreadLocal<Object> SCRIPT = new ThreadLocal<Object>();
+
+	private static final MethodHandle BEGIN, END, SET, COMMIT;
+	private static final Constructor<?> ANNOTATION, VALUE;
+	private static final MethodHandle CREATE, NEW_EVENT, GET_EVENT_TYPE,
+			IS_ENABLED;
+	private static final Class<?> NAME, LABEL, CATEGORY_ANNOTATION;
+
+	// NB: Initialized before the event types, which need the handles.
+	static {
+		MethodHandle isEnabled = null, begin = null, end = null, set = null,
+				commit = null, create = null, newEvent = null, getEventType = null;
+		Constructor<?> annotation = null, value = null;
+		Class<?> name = null, label = null, category = null;
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			final Class<?> event = Class.forName("jdk.jfr.Event");
+			final Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+			final Class<?> annotationElement =
+				Class.forName("jdk.jfr.AnnotationElement");
+			final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+			final Class<?> eventType = Class.forName("jdk.jfr.EventType");
+			final MethodType generic = MethodType.methodType(void.class,
+				Object.class);
+			isEnabled = lookup.findVirtual(eventType, "isEnabled", MethodType
+				.methodType(boolean.class)).asType(MethodType.methodType(
+					boolean.class, Object.class));
+			begin = lookup.findVirtual(event, "begin", MethodType.methodType(
+				void.class)).asType(generic);
+			end = lookup.findVirtual(event, "end", MethodType.methodType(
+				void.class)).asType(generic);
+			commit = lookup.findVirtual(event, "commit", MethodType.methodType(
+				void.class)).asType(generic);
+			set = lookup.findVirtual(event, "set", MethodType.methodType(
+				void.class, int.class, Object.class)).asType(MethodType.methodType(
+					void.class, Object.class, int.class, Object.class));
+			create = lookup.findStatic(factory, "create", MethodType.methodType(
+				factory, List.class, List.class)).asType(MethodType.methodType(
+					Object.class, List.class, List.class));
+			newEvent = lookup.findVirtual(factory, "newEvent", MethodType
+				.methodType(event)).asType(MethodType.methodType(Object.class,
+					Object.class));
+			getEventType = lookup.findVirtual(factory, "getEventType", MethodType
+				.methodType(eventType)).asType(MethodType.methodType(Object.class,
+					Object.class));
+			annotation = annotationElement.getConstructor(Class.class,
+				Object.class);
+			value = valueDescriptor.getConstructor(Class.class, String.class);
+			name = Class.forName("jdk.jfr.Name");
+			label = Class.forName("jdk.jfr.Label");
+			category = Class.forName("jdk.jfr.Category");
+		}
+		catch (final Throwable t) {
+			// NB: No Flight Recorder API; no events.
+			create = null;
+		}
+		BEGIN = begin;
+		END = end;
+		SET = set;
+		COMMIT = commit;
+		CREATE = create;
+		NEW_EVENT = newEvent;
+		GET_EVENT_TYPE = getEventType;
+		IS_ENABLED = isEnabled;
+		ANNOTATION = annotation;
+		VALUE = value;
+		NAME = name;
+		LABEL = label;
+		CATEGORY_ANNOTATION = category;
+	}
+
+	/** Compiling a script, from source code to loaded class. */
+	static final EventType COMPILE =
+		new EventType("Compile", "Script Compilation");
+
+	/** Scanning the class path for the dependencies of a stand-alone script. */
+	static final EventType CLASS_PATH_SCAN =
+		new EventType("ClassPathScan", "Script Class Path Scan");
+
+	/** Generating the POM for a stand-alone script. */
+	static final EventType FAKE_POM =
+		new EventType("FakePOM", "Script POM Generation");
+
+	/** Building a script's project via MiniMaven. */
+	static final EventType BUILD = new EventType("Build", "Script Build");
+
+	/** Loading the compiled main class of a script. */
+	static final EventType LOAD_CLASS =
+		new EventType("LoadClass", "Script Class Loading");
+
+	/** Running a compiled script. */
+	static final EventType RUN = new EventType("Run", "Script Execution");
+
+	private FlightRecorder() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Sets the script that the events of the current thread belong to.
+	 * <p>
+	 * The hash of source code is computed only if an event is recorded.
+	 * </p>
+	 * 
+	 * @param script the script's path, or its source code by file name (as
+	 *          a {@link Map}), or null
+	 * @return the previous script, to be restored when done
+	 */
+	static Object setScript(final Object script) {
+		final Object previous = SCRIPT.get();
+		if (script == null) SCRIPT.remove();
+		else SCRIPT.set(script);
+		return previous;
+	}
+
+	/** A type of event, defined if the JVM supports it. */
+	static class EventType {
+
+		private final MethodHandle newEvent, isEnabled;
+
+		private EventType(final String name, final String label) {
+			MethodHandle newEvent = null, isEnabled = null;
+			final Object factory = define(PREFIX + name, label);
+			if (factory != null) {
+				try {
+					isEnabled = IS_ENABLED.bindTo(GET_EVENT_TYPE.invoke(factory));
+					newEvent = NEW_EVENT.bindTo(factory);
+				}
+				catch (final Throwable t) {
+					// NB: No events of this type.
+				}
+			}
+			this.newEvent = newEvent;
+			this.isEnabled = isEnabled;
+		}
+
+		/**
+		 * Starts timing an event.
+		 * 
+		 * @return the event, or null if events of this type are not recorded
+		 */
+		Event begin() {
+			if (newEvent == null) return null;
+			try {
+				if (!(boolean) isEnabled.invokeExact()) return null;
+				final Object event = newEvent.invoke();
+				BEGIN.invoke(event);
+				return new Event(event);
+			}
+			catch (final Throwable t) {
+				return null;
+			}
+		}
+	}
+
+	/** An event being timed. */
+	static class Event {
+
+		private final Object event;
+
+		private Event(final Object event) {
+			this.event = event;
+		}
+
+		/**
+		 * Finishes and records the event, for the script of the current thread.
+		 * 
+		 * @param subject what the phase was about, e.g. a class name, or null
+		 * @param classPathEntries the number of class path entries, or -1
+		 * @param outcome what came out of it, e.g. {@code "ok"} or
+		 *          {@code "failed"}
+		 */
+		void end(final String subject, final int classPathEntries,
+			final String outcome)
+		{
+			try {
+				END.invoke(event);
+				SET.invoke(event, 0, identify(SCRIPT.get()));
+				SET.invoke(event, 1, subject);
+				SET.invoke(event, 2, classPathEntries);
+				SET.invoke(event, 3, outcome);
+				COMMIT.invoke(event);
+			}
+			catch (final Throwable t) {
+				// NB: Losing an event must not affect the script.
+			}
+		}
+	}
+
+	/**
+	 * Convenience method to finish an event that may not have been started.
+	 * 
+	 * @see Event#end(String, int, String)
+	 */
+	static void end(final Event event, final String subject,
+		final int classPathEntries, final String outcome)
+	{
+		if (event != null) event.end(subject, classPathEntries, outcome);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Identifies a script the way {@link ScriptAccounting} does: by its path,
+	 * or by the hash of its source code.
+	 */
+	private static String identify(final Object script) {
+		if (!(script instanceof Map)) return (String) script;
+		@SuppressWarnings("unchecked")
+		final Map<String, String> sources = (Map<String, String>) script;
+		return "sha1:" + JavaEngine.digest(sources);
+	}
+
+	/**
+	 * Defines an event type with the fields {@code script}, {@code subject},
+	 * {@code classPathEntries} and {@code outcome}.
+	 * 
+	 * @return the {@code jdk.jfr.EventFactory} of that type, or null
+	 */
+	private static Object define(final String name, final String label) {
+		if (CREATE == null) return null;
+		try {
+			final List<Object> annotations = Arrays.asList( //
+				ANNOTATION.newInstance(NAME, name), //
+				ANNOTATION.newInstance(LABEL, label), //
+				ANNOTATION.newInstance(CATEGORY_ANNOTATION, CATEGORY));
+			final List<Object> fields = new ArrayList<Object>();
+			fields.add(VALUE.newInstance(String.class, "script"));
+			fields.add(VALUE.newInstance(String.class, "subject"));
+			fields.add(VALUE.newInstance(int.class, "classPathEntries"));
+			fields.add(VALUE.newInstance(String.class, "outcome"));
+			return CREATE.invoke(annotations, fields);
+		}
+		catch (final Throwable t) {
+			return null;
+		}
+	}
+
+}
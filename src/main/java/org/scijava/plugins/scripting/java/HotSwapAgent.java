@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * The Java agent providing the {@link Instrumentation} to redefine classes
+ * when hot swapping recompiled scripts.
+ * <p>
+ * This class is packaged into an agent {@code .jar} file by itself, and
+ * loaded into the running JVM by a helper process (see {@link #main}), as
+ * recent JDKs forbid a JVM to attach to itself. It is therefore public, but
+ * not meant to be used directly.
+ * </p>
+ */
+public class HotSwapAgent {
+
+	private static volatile Instrumentation instrumentation;
+
+	private HotSwapAgent() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * @return the instrumentation, or null if the agent was not loaded
+	 */
+	public static Instrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * Called by the JVM when the agent is loaded dynamically.
+	 * 
+	 * @param arguments the agent's arguments (ignored)
+	 * @param inst the instrumentation
+	 */
+	public static void agentmain(final String arguments,
+		final Instrumentation inst)
+	{
+		instrumentation = inst;
+	}
+
+	/**
+	 * Loads an agent into a running JVM.
+	 * 
+	 * @param args the process ID of the JVM and the path of the agent's
+	 *          {@code .jar} file
+	 */
+	public static void main(final String[] args) throws Exception {
+		// NB: The Attach API is not part of the Java 8 platform API.
+		final Class<?> vm = Class.forName("com.sun.tools.attach.VirtualMachine");
+		final Object machine = vm.getMethod("attach", String.class).invoke(null,
+			args[0]);
+		try {
+			vm.getMethod("loadAgent", String.class).invoke(machine, args[1]);
+		}
+		finally {
+			vm.getMethod("detach").invoke(machine);
+		}
+	}
+
+}
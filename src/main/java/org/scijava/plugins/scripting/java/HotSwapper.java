@@ -0,0 +1,358 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Applies recompiled script classes to the classes compiled previously, if
+ * only method bodies changed.
+ * <p>
+ * Redefining a class keeps its instances and static state, so that e.g. a
+ * long-running processing pipeline picks up the new code the next time it
+ * calls a method, instead of having to start over with a class loaded afresh.
+ * The redefinition uses {@link Instrumentation#redefineClasses}, provided by
+ * {@link HotSwapAgent}, which is attached to the running JVM on first use.
+ * </p>
+ * <p>
+ * Only classes compiled in memory (i.e. loaded by a {@link MemoryClassLoader})
+ * can be hot swapped, as their byte code is at hand. If fields, methods,
+ * constructors, super types or the set of classes changed, or if the agent
+ * could not be attached, the recompiled classes are used as they are.
+ * </p>
+ */
+class HotSwapper {
+
+	/** Whether attaching the agent was attempted already. */
+	private static boolean attached;
+
+	private static Instrumentation instrumentation;
+
+	/** The classes most recently compiled, by name. */
+	private final Map<String, WeakReference<Class<?>>> current =
+		new HashMap<String, WeakReference<Class<?>>>();
+
+	/**
+	 * Hot swaps a recompiled class into the class of the same name compiled
+	 * previously, if possible.
+	 * 
+	 * @param compiled the class as compiled just now
+	 * @return the class to use from now on: either the previously compiled
+	 *         class, now redefined, or the given class
+	 */
+	Class<?> swap(final Class<?> compiled) {
+		final String name = compiled.getName();
+		final Class<?> candidate = current(name);
+		if (candidate == compiled) return compiled;
+
+		// NB: Attaching the agent may take a while; do not hold the lock.
+		final Instrumentation inst =
+			candidate != null && compatible(candidate, compiled)
+				? getInstrumentation() : null;
+
+		synchronized (this) {
+			final Class<?> previous = current(name);
+			if (previous == compiled) return compiled;
+			if (previous != null && inst != null && compatible(previous, compiled) &&
+				redefine(inst, previous, compiled))
+			{
+				return previous;
+			}
+			current.put(name, new WeakReference<Class<?>>(compiled));
+			return compiled;
+		}
+	}
+
+	// -- Helper methods --
+
+	private synchronized Class<?> current(final String name) {
+		final WeakReference<Class<?>> reference = current.get(name);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Determines whether both classes were compiled in memory, together with
+	 * the same set of classes.
+	 */
+	private static boolean compatible(final Class<?> previous,
+		final Class<?> compiled)
+	{
+		final ClassLoader before = previous.getClassLoader();
+		final ClassLoader after = compiled.getClassLoader();
+		return before instanceof MemoryClassLoader &&
+			after instanceof MemoryClassLoader &&
+			((MemoryClassLoader) before).getClassNames().equals(
+				((MemoryClassLoader) after).getClassNames());
+	}
+
+	/**
+	 * Redefines a class, and all classes compiled with it, using the byte code
+	 * of the recompiled ones.
+	 * 
+	 * @return whether the classes were redefined
+	 */
+	private static boolean redefine(final Instrumentation inst,
+		final Class<?> previous, final Class<?> compiled)
+	{
+		if (!inst.isRedefineClassesSupported()) return false;
+		final MemoryClassLoader before =
+			(MemoryClassLoader) previous.getClassLoader();
+		final MemoryClassLoader after =
+			(MemoryClassLoader) compiled.getClassLoader();
+		try {
+			final List<ClassDefinition> definitions =
+				new ArrayList<ClassDefinition>();
+			for (final String name : after.getClassNames()) {
+				final Class<?> old = Class.forName(name, false, before);
+				if (old.getClassLoader() != before) return false;
+				if (!sameShape(old, Class.forName(name, false, after))) return false;
+				definitions.add(new ClassDefinition(old, after.getBytes(name)));
+			}
+			inst.redefineClasses(definitions.toArray(
+				new ClassDefinition[definitions.size()]));
+			return true;
+		}
+		catch (final ClassNotFoundException e) {
+			return false;
+		}
+		catch (final UnmodifiableClassException e) {
+			return false;
+		}
+		catch (final UnsupportedOperationException e) {
+			// NB: The JVM rejected a change we did not detect.
+			return false;
+		}
+		catch (final LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Determines whether two classes have the same modifiers, super types and
+	 * members, i.e. whether one can be redefined as the other.
+	 */
+	private static boolean sameShape(final Class<?> a, final Class<?> b) {
+		return a.getModifiers() == b.getModifiers() &&
+			names(a.getSuperclass()).equals(names(b.getSuperclass())) &&
+			names(a.getInterfaces()).equals(names(b.getInterfaces())) &&
+			members(a).equals(members(b));
+	}
+
+	private static List<String> names(final Class<?>... classes) {
+		final List<String> result = new ArrayList<String>();
+		for (final Class<?> c : classes) {
+			result.add(c == null ? null : c.getName());
+		}
+		return result;
+	}
+
+	private static List<String> members(final Class<?> c) {
+		final List<String> result = new ArrayList<String>();
+		for (final Field field : c.getDeclaredFields()) {
+			result.add(field.toString());
+		}
+		for (final Method method : c.getDeclaredMethods()) {
+			result.add(method.toString());
+		}
+		for (final Constructor<?> constructor : c.getDeclaredConstructors()) {
+			result.add(constructor.toString());
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Gets the instrumentation, attaching the {@link HotSwapAgent} if needed.
+	 * 
+	 * @return the instrumentation, or null if the agent could not be attached
+	 */
+	private static synchronized Instrumentation getInstrumentation() {
+		if (!attached) {
+			attached = true;
+			instrumentation = attach();
+		}
+		return instrumentation;
+	}
+
+	private static Instrumentation attach() {
+		final Instrumentation inst = lookup();
+		if (inst != null) return inst;
+		final TemporaryWorkspace workspace;
+		final File directory;
+		try {
+			workspace = TemporaryWorkspace.getDefault();
+			directory = workspace.acquire();
+		}
+		catch (final IOException e) {
+			return null;
+		}
+		try {
+			final File jar = writeAgentJar(directory);
+			final String pid =
+				ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+			final File javaHome = new File(System.getProperty("java.home"));
+			String classPath = jar.getPath();
+			// Java 8 keeps the Attach API in tools.jar
+			final File tools = new File(javaHome.getParentFile(), "lib/tools.jar");
+			if (tools.exists()) classPath += File.pathSeparator + tools.getPath();
+			final Process process = new ProcessBuilder(new File(javaHome,
+				"bin/java").getPath(), "-cp", classPath, HotSwapAgent.class
+					.getName(), pid, jar.getPath()).redirectErrorStream(true).start();
+			// NB: ProcessBuilder.Redirect.DISCARD needs Java 9.
+			discard(process.getInputStream());
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+				return null;
+			}
+			if (process.exitValue() != 0) return null;
+			return lookup();
+		}
+		catch (final IOException e) {
+			return null;
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		finally {
+			// NB: The workspace retries if the JVM still holds the jar open.
+			workspace.release(directory);
+		}
+	}
+
+	/**
+	 * Reads and discards a stream on a daemon thread, so that a helper process
+	 * filling its output pipe cannot block, nor keep us waiting past the
+	 * timeout.
+	 */
+	private static void discard(final InputStream in) {
+		final Thread thread = new Thread("JavaEngine hot swap helper output") {
+
+			@Override
+			public void run() {
+				final byte[] buffer = new byte[1024];
+				try {
+					while (in.read(buffer) >= 0) {
+						// NB: Discard the helper's output.
+					}
+				}
+				catch (final IOException e) {
+					// NB: The helper went away.
+				}
+				finally {
+					try {
+						in.close();
+					}
+					catch (final IOException e) {
+						// NB: Nothing left to read.
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Looks up the instrumentation of the agent as loaded by the system class
+	 * loader, which need not be the class loader of this class.
+	 */
+	private static Instrumentation lookup() {
+		try {
+			final Class<?> agent = Class.forName(HotSwapAgent.class.getName(), true,
+				ClassLoader.getSystemClassLoader());
+			return (Instrumentation) agent.getMethod("getInstrumentation").invoke(
+				null);
+		}
+		catch (final ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Packages the {@link HotSwapAgent} into an agent {@code .jar} file in the
+	 * given temporary directory.
+	 */
+	private static File writeAgentJar(final File directory) throws IOException {
+		final Manifest manifest = new Manifest();
+		final Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.put(Attributes.Name.MAIN_CLASS, HotSwapAgent.class.getName());
+		attributes.putValue("Agent-Class", HotSwapAgent.class.getName());
+		attributes.putValue("Can-Redefine-Classes", "true");
+
+		final File jar = new File(directory, "scijava-java-agent.jar");
+		final String entry = HotSwapAgent.class.getName().replace('.', '/') +
+			".class";
+		final InputStream in = HotSwapAgent.class.getResourceAsStream("/" + entry);
+		if (in == null) throw new IOException("Could not find " + entry);
+		final JarOutputStream out =
+			new JarOutputStream(new FileOutputStream(jar), manifest);
+		try {
+			out.putNextEntry(new JarEntry(entry));
+			final byte[] buffer = new byte[16384];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				out.write(buffer, 0, count);
+			}
+		}
+		finally {
+			in.close();
+			out.close();
+		}
+		return jar;
+	}
+
+}
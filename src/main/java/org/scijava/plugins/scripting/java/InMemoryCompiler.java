@@ -0,0 +1,411 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.script.ScriptException;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles Java sources held in memory into byte code held in memory, using
+ * the {@code javac} of the running JDK.
+ * <p>
+ * This avoids the round-trip through the file system (and MiniMaven) when all
+ * that is needed is a class to load.
+ * </p>
+ */
+class InMemoryCompiler {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private InMemoryCompiler() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * @return whether the running JVM provides a Java compiler
+	 */
+	static boolean isAvailable() {
+		return ToolProvider.getSystemJavaCompiler() != null;
+	}
+
+	/**
+	 * Compiles the specified sources.
+	 * 
+	 * @param sources the source code, by path relative to the source root (e.g.
+	 *          {@code org/example/Hello.java})
+	 * @param classPath the class path to compile against, or null
+	 * @param options additional options to pass to {@code javac}
+	 * @param output where to write the compiler's messages, or null
+	 * @return the byte code, by binary class name
+	 * @throws ScriptException if the sources failed to compile; the location of
+	 *           the first error is recorded in the exception
+	 */
+	static Map<String, byte[]> compile(final Map<String, String> sources,
+		final String classPath, final List<String> options, final Writer output)
+		throws ScriptException
+	{
+		return compile(sources, classPath, options, output, null);
+	}
+
+	/**
+	 * Compiles the specified sources, keeping the other files written to the
+	 * class output, too, e.g. the plugin index generated by an annotation
+	 * processor.
+	 * 
+	 * @param sources the source code, by path relative to the source root (e.g.
+	 *          {@code org/example/Hello.java})
+	 * @param classPath the class path to compile against, or null
+	 * @param options additional options to pass to {@code javac}
+	 * @param output where to write the compiler's messages, or null
+	 * @param resources the map to add the other files to, by path, or null
+	 * @return the byte code, by binary class name
+	 * @throws ScriptException if the sources failed to compile; the location of
+	 *           the first error is recorded in the exception
+	 */
+	static Map<String, byte[]> compile(final Map<String, String> sources,
+		final String classPath, final List<String> options, final Writer output,
+		final Map<String, byte[]> resources) throws ScriptException
+	{
+		final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null) {
+			throw new ScriptException("No Java compiler available");
+		}
+
+		final List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			units.add(new Source(entry.getKey(), entry.getValue()));
+		}
+
+		final List<String> arguments = new ArrayList<String>(options);
+		if (classPath != null) {
+			arguments.add("-classpath");
+			arguments.add(classPath);
+		}
+
+		final DiagnosticCollector<JavaFileObject> diagnostics =
+			new DiagnosticCollector<JavaFileObject>();
+		final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+		final JavaFileManager fileManager =
+			new Output(javac.getStandardFileManager(diagnostics, null, null),
+				classes, resources);
+		final boolean success;
+		try {
+			success = javac.getTask(null, fileManager, diagnostics, arguments, null,
+				units).call();
+		}
+		finally {
+			try {
+				fileManager.close();
+			}
+			catch (final IOException e) {
+				// NB: Nothing was written to disk.
+			}
+		}
+
+		Diagnostic<? extends JavaFileObject> firstError = null;
+		for (final Diagnostic<? extends JavaFileObject> d : diagnostics
+			.getDiagnostics())
+		{
+			if (d.getKind() == Diagnostic.Kind.ERROR && firstError == null) {
+				firstError = d;
+			}
+			if (output != null) {
+				try {
+					output.append(format(d)).append('\n');
+				}
+				catch (final IOException e) {
+					// NB: The messages are also recorded in the exception.
+				}
+			}
+		}
+		if (output != null) {
+			try {
+				output.flush();
+			}
+			catch (final IOException e) {
+				// NB: The messages are also recorded in the exception.
+			}
+		}
+		if (!success) {
+			if (firstError == null) throw new ScriptException("Compilation failed");
+			throw new ScriptException(format(firstError), sourceName(firstError),
+				(int) firstError.getLineNumber(), (int) firstError
+					.getColumnNumber());
+		}
+		return classes;
+	}
+
+	/**
+	 * Parses and attributes the specified sources without generating any byte
+	 * code.
+	 * <p>
+	 * Where {@code com.sun.source.util.JavacTask#analyze()} is not available,
+	 * the sources are compiled into memory, and the byte code is discarded.
+	 * </p>
+	 * 
+	 * @param sources the source code, by path relative to the source root
+	 * @param classPath the class path to compile against, or null
+	 * @param options additional options to pass to {@code javac}
+	 * @return the problems found by the compiler, errors as well as warnings
+	 * @throws ScriptException if no compiler is available
+	 */
+	static List<ScriptDiagnostic> check(final Map<String, String> sources,
+		final String classPath, final List<String> options)
+		throws ScriptException
+	{
+		final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null) {
+			throw new ScriptException("No Java compiler available");
+		}
+
+		final List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			units.add(new Source(entry.getKey(), entry.getValue()));
+		}
+
+		final List<String> arguments = new ArrayList<String>(options);
+		if (classPath != null) {
+			arguments.add("-classpath");
+			arguments.add(classPath);
+		}
+
+		final DiagnosticCollector<JavaFileObject> diagnostics =
+			new DiagnosticCollector<JavaFileObject>();
+		final JavaFileManager fileManager =
+			new Output(javac.getStandardFileManager(diagnostics, null, null),
+				new LinkedHashMap<String, byte[]>(), null);
+		try {
+			final CompilationTask task =
+				javac.getTask(null, fileManager, diagnostics, arguments, null, units);
+			try {
+				// NB: JavacTask is not part of the Java 8 platform API.
+				Class.forName("com.sun.source.util.JavacTask").getMethod("analyze")
+					.invoke(task);
+			}
+			catch (final InvocationTargetException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new ScriptException(String.valueOf(cause));
+			}
+			catch (final ReflectiveOperationException e) {
+				task.call();
+			}
+		}
+		finally {
+			try {
+				fileManager.close();
+			}
+			catch (final IOException e) {
+				// NB: Nothing was written to disk.
+			}
+		}
+
+		final List<ScriptDiagnostic> result = new ArrayList<ScriptDiagnostic>();
+		for (final Diagnostic<? extends JavaFileObject> d : diagnostics
+			.getDiagnostics())
+		{
+			result.add(new ScriptDiagnostic(d.getKind(), sourceName(d), d
+				.getLineNumber(), d.getColumnNumber(), d.getMessage(Locale.ENGLISH)));
+		}
+		return result;
+	}
+
+	/**
+	 * Formats a diagnostic the way {@code javac} reports it on the command line.
+	 */
+	static String format(final Diagnostic<? extends JavaFileObject> d) {
+		final StringBuilder builder = new StringBuilder();
+		final String source = sourceName(d);
+		if (source != null) {
+			builder.append(source);
+			if (d.getLineNumber() != Diagnostic.NOPOS) {
+				builder.append(':').append(d.getLineNumber());
+			}
+			builder.append(": ");
+		}
+		builder.append(d.getKind().toString().toLowerCase(Locale.ENGLISH));
+		builder.append(": ").append(d.getMessage(Locale.ENGLISH));
+		return builder.toString();
+	}
+
+	private static String sourceName(final Diagnostic<? extends JavaFileObject> d) {
+		final JavaFileObject source = d.getSource();
+		if (source == null) return null;
+		if (source instanceof Source) return ((Source) source).path;
+		return source.getName();
+	}
+
+	/** A compilation unit held in memory. */
+	private static class Source extends SimpleJavaFileObject {
+
+		private final String path;
+		private final String content;
+
+		private Source(final String path, final String content) {
+			super(URI.create("string:///" + path.replace('\\', '/')), Kind.SOURCE);
+			this.path = path;
+			this.content = content;
+		}
+
+		@Override
+		public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+			return content;
+		}
+	}
+
+	/**
+	 * A file manager capturing all output in memory, including the files
+	 * generated by annotation processors.
+	 */
+	private static class Output extends
+		ForwardingJavaFileManager<StandardJavaFileManager>
+	{
+
+		private final Map<String, byte[]> classes, resources;
+
+		private Output(final StandardJavaFileManager fileManager,
+			final Map<String, byte[]> classes, final Map<String, byte[]> resources)
+		{
+			super(fileManager);
+			this.classes = classes;
+			this.resources = resources;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(final Location location,
+			final String className, final Kind kind, final FileObject sibling)
+		{
+			final String path = className.replace('.', '/') + kind.extension;
+			if (kind == Kind.CLASS) return new MemoryFile(path, kind, className);
+			return new MemoryFile(path, kind, null, isResource(location));
+		}
+
+		@Override
+		public FileObject getFileForOutput(final Location location,
+			final String packageName, final String relativeName,
+			final FileObject sibling)
+		{
+			final String path = packageName.isEmpty() ? relativeName : packageName
+				.replace('.', '/') + "/" + relativeName;
+			return new MemoryFile(path, Kind.OTHER, null, isResource(location));
+		}
+
+		private boolean isResource(final Location location) {
+			return resources != null && location == StandardLocation.CLASS_OUTPUT;
+		}
+
+		/** A file written by the compiler. */
+		private class MemoryFile extends SimpleJavaFileObject {
+
+			private final String path, className;
+			private final boolean resource;
+			private byte[] bytes = new byte[0];
+
+			private MemoryFile(final String path, final Kind kind,
+				final String className)
+			{
+				this(path, kind, className, false);
+			}
+
+			private MemoryFile(final String path, final Kind kind,
+				final String className, final boolean resource)
+			{
+				super(URI.create("memory:///" + path), kind);
+				this.path = path;
+				this.className = className;
+				this.resource = resource;
+			}
+
+			@Override
+			public OutputStream openOutputStream() {
+				return new ByteArrayOutputStream() {
+
+					@Override
+					public void close() throws IOException {
+						super.close();
+						bytes = toByteArray();
+						if (className != null) {
+							synchronized (classes) {
+								classes.put(className, bytes);
+							}
+						}
+						else if (resource) {
+							synchronized (resources) {
+								resources.put(path, bytes);
+							}
+						}
+					}
+				};
+			}
+
+			@Override
+			public InputStream openInputStream() {
+				return new ByteArrayInputStream(bytes);
+			}
+
+			@Override
+			public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+				return new String(bytes, UTF_8);
+			}
+		}
+	}
+
+}
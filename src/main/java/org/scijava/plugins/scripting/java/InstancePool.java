@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.reflect.Constructor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps instances of stateless script classes for reuse.
+ * <p>
+ * The pools are stored in a {@link ClassValue}, so they do not prevent the
+ * script classes from being unloaded.
+ * </p>
+ */
+class InstancePool {
+
+	/** The maximal number of idle instances to keep per class. */
+	private static final int MAX_IDLE = 16;
+
+	private static final ClassValue<InstancePool> POOLS =
+		new ClassValue<InstancePool>()
+		{
+
+			@Override
+			protected InstancePool computeValue(final Class<?> type) {
+				return new InstancePool(type);
+			}
+		};
+
+	private final Class<?> type;
+	private final Queue<Object> idle = new ConcurrentLinkedQueue<Object>();
+	private final AtomicInteger size = new AtomicInteger();
+	private volatile Constructor<?> constructor;
+
+	private InstancePool(final Class<?> type) {
+		this.type = type;
+	}
+
+	/**
+	 * @param clazz the script class
+	 * @return the pool of instances of the class
+	 */
+	static InstancePool get(final Class<?> clazz) {
+		return POOLS.get(clazz);
+	}
+
+	/**
+	 * Creates a new instance via the class' no-argument constructor.
+	 * 
+	 * @param clazz the class to instantiate
+	 * @return the new instance
+	 */
+	static Object instantiate(final Class<?> clazz) throws Exception {
+		return get(clazz).create();
+	}
+
+	/**
+	 * Takes an idle instance, or creates a new one if there is none.
+	 * 
+	 * @return the instance, to be handed back via {@link #offer(Object)}
+	 */
+	Object take() throws Exception {
+		final Object instance = idle.poll();
+		if (instance == null) return create();
+		size.decrementAndGet();
+		return instance;
+	}
+
+	/**
+	 * Hands back an instance after use.
+	 * 
+	 * @param instance the instance, obtained via {@link #take()}
+	 */
+	void offer(final Object instance) {
+		if (size.incrementAndGet() > MAX_IDLE) {
+			size.decrementAndGet();
+			return;
+		}
+		idle.offer(instance);
+	}
+
+	// -- Helper methods --
+
+	private Object create() throws Exception {
+		Constructor<?> c = constructor;
+		if (c == null) {
+			c = type.getDeclaredConstructor();
+			c.setAccessible(true);
+			constructor = c;
+		}
+		return c.newInstance();
+	}
+
+}
@@ -32,7 +32,9 @@
 package org.scijava.plugins.scripting.java;
 
 import io.github.classgraph.ClassGraph;
+import org.scijava.command.Command;
 import org.scijava.command.CommandService;
+import org.scijava.convert.ConvertService;
 import org.scijava.minimaven.BuildEnvironment;
 import org.scijava.minimaven.Coordinate;
 import org.scijava.minimaven.MavenProject;
@@ -40,12 +42,13 @@ import org.scijava.plugin.Parameter;
 import org.scijava.plugin.PluginService;
 import org.scijava.run.RunService;
 import org.scijava.script.AbstractScriptEngine;
-import org.scijava.util.FileUtils;
-import org.scijava.util.LineOutputStream;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import javax.script.Bindings;
+import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -62,18 +65,43 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -85,11 +113,67 @@ import java.util.regex.Pattern;
  * projects (triggered when the proviede script path suggests that the file is
  * part of a Maven project).
  * </p>
+ * <p>
+ * The engine is also {@link Invocable}: once a class has been compiled (via
+ * {@link #compile(String)} or {@link #eval(String)}), its static methods can be
+ * called via {@link #invokeFunction(String, Object...)}, and methods of
+ * arbitrary objects via {@link #invokeMethod(Object, String, Object...)}.
+ * </p>
  * 
  * @author Johannes Schindelin
  * @author Jonathan Hale
  */
-public class JavaEngine extends AbstractScriptEngine {
+public class JavaEngine extends AbstractScriptEngine implements Invocable {
+
+	/**
+	 * The key to select a {@link CompilerProfile} by name via the engine scope
+	 * bindings.
+	 */
+	public final static String PROFILE = "profile";
+
+	/**
+	 * The key to name a method to call when evaluating a script, instead of
+	 * running its class; its return value is returned by {@link #eval(String)}.
+	 */
+	public final static String ENTRY_POINT = "entryPoint";
+
+	/**
+	 * The key to enable reusing instances of script classes across evaluations,
+	 * for classes that are stateless.
+	 */
+	public final static String POOL_INSTANCES = "poolInstances";
+
+	/**
+	 * The key to enable hot swapping recompiled classes into the classes
+	 * compiled previously from the same script, where possible.
+	 */
+	public final static String HOT_SWAP = "hotSwap";
+
+	/**
+	 * The key to select the {@link CompileScheduler.Priority} of compiles by
+	 * name via the engine scope bindings; compiles are
+	 * {@link CompileScheduler.Priority#INTERACTIVE interactive} by default.
+	 */
+	public final static String COMPILE_PRIORITY = "compilePriority";
+
+	/**
+	 * The key to run scripts in benchmark mode: the value is the number of
+	 * iterations to measure, optionally preceded by the number of warm-up
+	 * iterations and a comma (e.g. {@code 10,50}). A {@link BenchmarkResult}
+	 * is returned instead of the script's return value.
+	 */
+	public final static String BENCHMARK = "benchmark";
+
+	/** The keys to build verbosely, and to output debug information. */
+	private final static String VERBOSE = "verbose", DEBUG = "debug";
+
+	/**
+	 * The keys configuring the engine rather than the script; their values are
+	 * not injected into fields of the same name.
+	 */
+	private final static Set<String> RESERVED = new HashSet<String>(Arrays
+		.asList(FILENAME, PROFILE, ENTRY_POINT, POOL_INSTANCES, HOT_SWAP,
+			COMPILE_PRIORITY, BENCHMARK, VERBOSE, DEBUG));
 
 	private final static String DEFAULT_GROUP_ID = "org.scijava.scripting.java";
 	private final static String DEFAULT_VERSION = "1.0.0-SNAPSHOT";
@@ -100,6 +184,16 @@ public class JavaEngine extends AbstractScriptEngine {
 	private final static String XALAN_INDENT_AMOUNT =
 		"{http://xml.apache.org/xslt}indent-amount";
 
+	/** The file name of a single script, whose class name is not known yet. */
+	private final static String SCRIPT_NAME = ".java";
+
+	/** The pattern identifying the source of a class with a main method. */
+	private final static Pattern MAIN_METHOD =
+		Pattern.compile("static\\s+void\\s+main\\s*\\(");
+
+	/** The maximal number of compiled classes to keep for reuse. */
+	private final static int MAX_CACHED_CLASSES = 32;
+
 	{
 		engineScopeBindings = new JavaEngineBindings();
 	}
@@ -113,24 +207,136 @@ public class JavaEngine extends AbstractScriptEngine {
 	@Parameter
 	private RunService runService;
 
+	@Parameter(required = false)
+	private ConvertService convertService;
+
+	/** The most recently compiled class, target of {@link #invokeFunction}. */
+	private volatile Class<?> compiledClass;
+
+	/** The compiler profile used unless overridden via {@link #PROFILE}. */
+	private volatile CompilerProfile profile = CompilerProfile.DEFAULT;
+
+	/** The statistics to record compiles and evaluations in. */
+	private volatile JavaEngineStats stats = new JavaEngineStats();
+
+	/** Redefines previously compiled classes, if {@link #HOT_SWAP} is set. */
+	private final HotSwapper hotSwapper = new HotSwapper();
+
+	/** Compiles edited scripts in the background. */
+	private final SpeculativeCompiler speculation = new SpeculativeCompiler();
+
+	/** Classes compiled from scripts, by profile and digest of the source. */
+	private final Map<String, Class<?>> classCache = newClassCache();
+
+	{
+		// release the cached classes from SciJava's caches with this engine
+		AnnotationCaches.track(this, classCache);
+	}
+
 	/**
 	 * Compiles and runs the specified {@code .java} class. If a filename is set
 	 * in the engine scope bindings via the {@link ScriptEngine#FILENAME} key,
 	 * this method compiles that file and runs the resulting main class instead.
 	 * <p>
 	 * The currently active {@link RunService} is responsible for running the
-	 * class.
+	 * class. Before that, the engine scope bindings are injected into the
+	 * class' static fields of the same name; if the class is a {@link Command},
+	 * the bindings matching its {@link Parameter} fields are passed as inputs.
+	 * </p>
+	 * <p>
+	 * Classes implementing {@link Callable} or {@link Supplier}, or having a
+	 * method named by the {@value #ENTRY_POINT} binding, are not run that way;
+	 * instead, that method is called directly (on a new instance, unless it is
+	 * static), and its return value is passed back. With the
+	 * {@value #POOL_INSTANCES} binding set to {@code true}, instances are
+	 * reused across evaluations.
+	 * </p>
+	 * <p>
+	 * With the {@value #BENCHMARK} binding set, the class is run (or its method
+	 * called) repeatedly; the measurements are written to the error writer and
+	 * returned as a {@link BenchmarkResult}.
 	 * </p>
 	 * 
 	 * @param script the source code for a Java class
-	 * @return null
+	 * @return the return value of the called method, the
+	 *         {@link BenchmarkResult} in benchmark mode, or null
 	 */
 	@Override
 	public Object eval(String script) throws ScriptException {
+		return evaluate(script, null);
+	}
+
+	/**
+	 * Compiles and runs a script consisting of several {@code .java} files, like
+	 * {@link #eval(String)} does for a single class.
+	 * 
+	 * @param sources the source code, by file name; see {@link #compile(Map)}
+	 * @return the return value of the called method, the
+	 *         {@link BenchmarkResult} in benchmark mode, or null
+	 * @see #eval(String)
+	 */
+	public Object eval(final Map<String, String> sources)
+		throws ScriptException
+	{
+		if (sources == null) throw new NullPointerException("sources");
+		return evaluate(null, sources);
+	}
+
+	/**
+	 * Compiles and runs a script.
+	 * 
+	 * @param script the source code for a Java class, if {@code sources} is
+	 *          null
+	 * @param sources the source code of several classes, by file name, or null
+	 */
+	private Object evaluate(final String script,
+		final Map<String, String> sources) throws ScriptException
+	{
 		final Writer writer = getContext().getErrorWriter();
+		stats.evaluated();
+		final String path = sources != null ? null : (String) get(FILENAME);
+		final Object previousScript = FlightRecorder.setScript(sources != null
+			? sources : path != null ? path : script != null ? singleSource(script)
+				: null);
 		try {
-			final Class<?> clazz = compile(script);
-			runService.run(clazz);
+			final Class<?> clazz =
+				sources != null ? compile(sources) : compile(script);
+			final Map<String, Object> inputs = injectBindings(clazz);
+			final String entryPoint = getEntryPoint(clazz);
+			final ScriptAccounting.Execution execution = ScriptAccounting.begin();
+			boolean failed = true;
+			try {
+				final Object benchmark = get(BENCHMARK);
+				if (benchmark == null || clazz == null) {
+					final Object result = execute(clazz, inputs, entryPoint);
+					failed = false;
+					return result;
+				}
+				final BenchmarkResult result = Benchmark.parse(benchmark).run(clazz
+					.getName(), new Callable<Object>()
+				{
+
+					@Override
+					public Object call() throws Exception {
+						return execute(clazz, inputs, entryPoint);
+					}
+				}, entryPoint != null);
+				if (writer != null) {
+					writer.append(result.toString()).append('\n');
+					writer.flush();
+				}
+				failed = false;
+				return result;
+			}
+			finally {
+				final String digest = sources != null ? digest(sources)
+					: script != null ? digest(script) : null;
+				if (clazz != null && (path != null || digest != null)) {
+					stats.getScriptAccounting().end(execution, path != null ? path
+						: "sha1:" + digest, clazz.getName(), failed);
+				}
+				releaseUnlessCached(clazz);
+			}
 		}
 		catch (Exception e) {
 			if (writer != null) {
@@ -143,6 +349,9 @@ public class JavaEngine extends AbstractScriptEngine {
 				throw new ScriptException(e);
 			}
 		}
+		finally {
+			FlightRecorder.setScript(previousScript);
+		}
 		return null;
 	}
 
@@ -164,100 +373,1250 @@ public class JavaEngine extends AbstractScriptEngine {
 		try {
 			script = getReaderContentsAsString(reader);
 		}
-		catch (IOException e) {
-			throw new ScriptException(e);
+		catch (IOException e) {
+			throw new ScriptException(e);
+		}
+		return eval(script);
+	}
+
+	/**
+	 * Makes a cache of compiled classes, evicting the least recently used ones.
+	 * <p>
+	 * The cache must not refer to the engine, so that the engine can be garbage
+	 * collected while {@link AnnotationCaches} tracks the cache.
+	 * </p>
+	 */
+	private static Map<String, Class<?>> newClassCache() {
+		return Collections.synchronizedMap(new LinkedHashMap<String, Class<?>>(16,
+			0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String, Class<?>> eldest)
+			{
+				if (size() <= MAX_CACHED_CLASSES) return false;
+				AnnotationCaches.release(eldest.getValue());
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Releases a class from SciJava's caches of annotated members, so that they
+	 * do not keep it from being unloaded, unless it is cached for reuse; cached
+	 * classes are released when they are evicted, or with this engine.
+	 * 
+	 * @param clazz the class that was run
+	 */
+	void releaseUnlessCached(final Class<?> clazz) {
+		if (clazz != null && !classCache.containsValue(clazz)) {
+			AnnotationCaches.release(clazz);
+		}
+	}
+
+	/**
+	 * Runs a compiled script once.
+	 * 
+	 * @param clazz the compiled class
+	 * @param inputs the inputs to pass when running a {@link Command}
+	 * @param entryPoint the method to call directly, or null to run the class
+	 *          via the {@link RunService}
+	 * @return the return value of the called method, or null
+	 */
+	private Object execute(final Class<?> clazz,
+		final Map<String, Object> inputs, final String entryPoint)
+		throws ScriptException, InvocationTargetException
+	{
+		if (entryPoint != null) return call(clazz, entryPoint);
+		final FlightRecorder.Event event = FlightRecorder.RUN.begin();
+		String outcome = "failed";
+		try {
+			if (inputs.isEmpty()) runService.run(clazz);
+			else runService.run(clazz, inputs);
+			outcome = "ok";
+			return null;
+		}
+		finally {
+			FlightRecorder.end(event, clazz == null ? null : clazz.getName(), -1,
+				outcome);
+		}
+	}
+
+	/**
+	 * Determines the method to call directly when evaluating a script.
+	 * 
+	 * @param clazz the compiled class
+	 * @return the name of the method, or null if the class is to be run via the
+	 *         {@link RunService}
+	 */
+	private String getEntryPoint(final Class<?> clazz) {
+		if (clazz == null) return null;
+		final Object name = get(ENTRY_POINT);
+		if (name != null) {
+			final String method = name.toString();
+			if (MethodDispatcher.hasMethod(clazz, method, true, 0) ||
+				MethodDispatcher.hasMethod(clazz, method, false, 0))
+			{
+				return method;
+			}
+		}
+		if (Command.class.isAssignableFrom(clazz)) return null;
+		if (Callable.class.isAssignableFrom(clazz)) return "call";
+		if (Supplier.class.isAssignableFrom(clazz)) return "get";
+		return null;
+	}
+
+	/**
+	 * Calls a script's entry point directly.
+	 * 
+	 * @param clazz the compiled class
+	 * @param entryPoint the name of the method to call
+	 * @return the method's return value
+	 */
+	private Object call(final Class<?> clazz, final String entryPoint)
+		throws ScriptException
+	{
+		final FlightRecorder.Event event = FlightRecorder.RUN.begin();
+		String outcome = "failed";
+		try {
+			if (MethodDispatcher.hasMethod(clazz, entryPoint, true, 0)) {
+				final Object result = MethodDispatcher.invokeStatic(clazz, entryPoint);
+				outcome = "ok";
+				return result;
+			}
+			final Object pool = get(POOL_INSTANCES);
+			final InstancePool instances = pool != null && //
+				Boolean.parseBoolean(pool.toString()) ? InstancePool.get(clazz) : null;
+			final Object instance = instances != null ? instances.take() : //
+				InstancePool.instantiate(clazz);
+			final Map<String, Object> values = getScriptBindings();
+			if (!values.isEmpty()) {
+				FieldInjector.get(clazz).injectInstance(instance, values,
+					convertService);
+			}
+			final Object result =
+				MethodDispatcher.invokeVirtual(instance, entryPoint);
+			if (instances != null) instances.offer(instance);
+			outcome = "ok";
+			return result;
+		}
+		catch (final ScriptException e) {
+			throw e;
+		}
+		catch (final Error e) {
+			throw e;
+		}
+		catch (final Throwable t) {
+			throw scriptException(t);
+		}
+		finally {
+			FlightRecorder.end(event, clazz.getName(), -1, outcome);
+		}
+	}
+
+	/**
+	 * Injects the engine scope bindings into the static fields of the specified
+	 * class.
+	 * 
+	 * @param clazz the compiled class
+	 * @return the bindings to pass as inputs when running the class as a
+	 *         {@link Command}
+	 */
+	private Map<String, Object> injectBindings(final Class<?> clazz) {
+		final Map<String, Object> values = getScriptBindings();
+		if (clazz == null || values.isEmpty()) return Collections.emptyMap();
+		final FieldInjector injector = FieldInjector.get(clazz);
+		injector.injectStatic(values, convertService);
+		if (!Command.class.isAssignableFrom(clazz)) return Collections.emptyMap();
+		return injector.getParameterInputs(values);
+	}
+
+	/**
+	 * @return the engine scope bindings destined for the script, i.e. all but
+	 *         the {@link #RESERVED} keys configuring the engine
+	 */
+	private Map<String, Object> getScriptBindings() {
+		final Bindings bindings = engineScopeBindings;
+		if (bindings == null || bindings.isEmpty()) return Collections.emptyMap();
+		final Map<String, Object> result = bindings instanceof JavaEngineBindings
+			? ((JavaEngineBindings) bindings).snapshot()
+			: new HashMap<String, Object>(bindings);
+		result.keySet().removeAll(RESERVED);
+		return result;
+	}
+
+	/**
+	 * Compiles and runs the specified {@code .java} class. If a filename is set
+	 * in the engine scope bindings via the {@link ScriptEngine#FILENAME} key,
+	 * this method compiles that file and returns its resulting main class
+	 * instead. Prebuilt {@code .jar} files and class directories (such as
+	 * {@code target/classes}) are not compiled, but their main class is loaded
+	 * directly.
+	 * <p>
+	 * Classes compiled from scripts are cached: compiling the same source code
+	 * with the same {@link CompilerProfile} again returns the same class.
+	 * </p>
+	 * <p>
+	 * With the {@value #HOT_SWAP} binding set to {@code true}, a class that was
+	 * compiled before (under the same name) is redefined rather than replaced
+	 * when only its method bodies changed, keeping its static state and
+	 * instances. This requires the classes to be compiled from a script, not
+	 * built from a Maven project.
+	 * </p>
+	 * 
+	 * @param script the source code for a Java class
+	 * @return the compiled Java class as {@link Class}.
+	 */
+	public Class<?> compile(String script) throws ScriptException {
+		// get filename from engine scope bindings
+		final String path = (String) get(FILENAME);
+		return compiled(compile(script == null ? null : singleSource(script),
+			path, getContext().getErrorWriter(), settings(), false));
+	}
+
+	/**
+	 * Compiles a script consisting of several {@code .java} files in one go.
+	 * <p>
+	 * The sources are compiled together, by a single {@code javac} invocation,
+	 * just like the single class passed to {@link #compile(String)}: those
+	 * needing nothing but the JDK are compiled in memory, and the compiled
+	 * classes are cached as one unit, i.e. compiling the same sources again
+	 * returns the same class. Dependencies declared in any of the sources (see
+	 * {@link DeclaredDependencies}) apply to all of them. The
+	 * {@link ScriptEngine#FILENAME} binding is ignored.
+	 * </p>
+	 * <p>
+	 * A directory of {@code .java} files set via the
+	 * {@link ScriptEngine#FILENAME} binding is compiled the same way by
+	 * {@link #compile(String)} and {@link #eval(String)}.
+	 * </p>
+	 * 
+	 * @param sources the source code, by file name (e.g.
+	 *          {@code Helper.java}); the public class of the first source is
+	 *          the main class, hence the map should be ordered, e.g. a
+	 *          {@link LinkedHashMap}
+	 * @return the main class
+	 */
+	public Class<?> compile(final Map<String, String> sources)
+		throws ScriptException
+	{
+		if (sources == null) throw new NullPointerException("sources");
+		if (sources.isEmpty()) throw new ScriptException("No sources to compile");
+		return compiled(compile(sources, null, getContext().getErrorWriter(),
+			settings(), false));
+	}
+
+	/**
+	 * Hot swaps a newly compiled class if requested, and remembers it as the
+	 * target of {@link #invokeFunction}.
+	 * <p>
+	 * A class that was redefined replaces the recompiled one in the
+	 * {@link #classCache}, so that cache hits neither redefine it again nor
+	 * keep the class loader of the recompiled class alive.
+	 * </p>
+	 */
+	private Class<?> compiled(Class<?> clazz) {
+		if (clazz == null) return null;
+		final Object hotSwap = get(HOT_SWAP);
+		if (hotSwap != null && Boolean.parseBoolean(hotSwap.toString())) {
+			final Class<?> swapped = hotSwapper.swap(clazz);
+			if (swapped != clazz) {
+				replaceCached(clazz, swapped);
+				clazz = swapped;
+			}
+		}
+		compiledClass = clazz;
+		return clazz;
+	}
+
+	/** Replaces a cached class with another one, keeping the cache keys. */
+	private void replaceCached(final Class<?> clazz, final Class<?> by) {
+		boolean replaced = false;
+		synchronized (classCache) {
+			for (final Map.Entry<String, Class<?>> entry : classCache.entrySet()) {
+				if (entry.getValue() != clazz) continue;
+				entry.setValue(by);
+				replaced = true;
+			}
+		}
+		if (replaced) AnnotationCaches.release(clazz);
+	}
+
+	/**
+	 * Compiles the specified {@code .java} classes, or the file with the given
+	 * path.
+	 * 
+	 * @param unit the source code, by file name, or null
+	 * @param path the path of the file to compile instead, or null
+	 * @param writer the destination of compiler errors, or null to throw them
+	 * @param settings the bindings configuring the compile, as read by the
+	 *          caller
+	 * @param speculative whether this is a background compile of an edited
+	 *          script
+	 * @return the compiled Java class, or null if it failed to compile
+	 */
+	private Class<?> compile(final Map<String, String> unit, final String path,
+		final Writer writer, final Settings settings, final boolean speculative)
+		throws ScriptException
+	{
+		File file = path == null ? null : new File(path);
+		Map<String, String> sources = unit;
+
+		final Builder builder = new Builder(settings);
+		final long start = System.nanoTime();
+		final Object previousScript =
+			FlightRecorder.setScript(path != null ? path : unit);
+		final FlightRecorder.Event event = FlightRecorder.COMPILE.begin();
+		String outcome = "failed";
+		int classPathEntries = -1;
+		final CompileScheduler scheduler = CompileScheduler.getDefault();
+		boolean admitted = false;
+		try {
+			final CompilerProfile profile = settings.profile;
+			boolean fromScript = file == null || !file.exists();
+
+			// prebuilt artifacts need no compiling
+			if (!fromScript && isPrebuilt(file)) {
+				final Class<?> prebuilt = loadPrebuilt(file);
+				outcome = "prebuilt";
+				return prebuilt;
+			}
+
+			// a directory of sources is compiled as one unit
+			if (!fromScript && file.isDirectory()) {
+				sources = readSources(file);
+				fromScript = true;
+			}
+
+			// stand-alone .java files take the same fast paths as scripts
+			if (!fromScript && isStandalone(file)) {
+				final Reader reader = new FileReader(file);
+				try {
+					sources = Collections.singletonMap(file.getName(),
+						getReaderContentsAsString(reader));
+				}
+				finally {
+					reader.close();
+				}
+				fromScript = true;
+			}
+
+			// reuse the class compiled from identical source code, if any
+			final String cacheKey =
+				fromScript && sources != null ? cacheKey(profile, sources) : null;
+			if (cacheKey != null) {
+				final Class<?> cached = classCache.get(cacheKey);
+				stats.cacheLookup(cached != null);
+				if (cached != null) {
+					outcome = "cached";
+					return cached;
+				}
+			}
+
+			// the class may be compiling in the background already
+			final Class<?> compiling =
+				cacheKey != null && !speculative ? speculation.await(cacheKey) : null;
+			if (compiling != null) {
+				outcome = "speculative";
+				return compiling;
+			}
+
+			// wait for javac to be available
+			scheduler.acquire(settings.priority);
+			admitted = true;
+
+			// scripts needing nothing but the JDK need no Maven project either
+			final Class<?> jdkOnly = fromScript && sources != null
+				? compileJdkOnly(sources, profile) : null;
+			if (jdkOnly != null) {
+				cache(cacheKey, jdkOnly, speculative);
+				stats.compiled(jdkOnly, System.nanoTime() - start);
+				outcome = "ok";
+				return jdkOnly;
+			}
+
+			if (!fromScript) {
+				// if the filename set in engine scope bindings is valid,
+				// ignore the given script and use that file instead.
+				builder.initialize(file, writer);
+			}
+			else {
+				builder.initialize(sources, writer);
+			}
+			final MavenProject project = builder.project;
+			String mainClass = builder.mainClass;
+
+			final ClassLoader classLoader;
+			if (!profile.isMiniMaven() && builder.temporaryDirectory != null &&
+				InMemoryCompiler.isAvailable())
+			{
+				// single-file script: no need to package it
+				classLoader = compileDirectly(builder, profile);
+			}
+			else {
+				final FlightRecorder.Event build = FlightRecorder.BUILD.begin();
+				String[] paths = null;
+				MavenProject target = project;
+				try {
+					if (builder.cachedProject != null && ReactorBuild.isReactor(
+						project))
+					{
+						// multi-module project: build independent modules in parallel,
+						// each admitted on its own
+						scheduler.release();
+						admitted = false;
+						final int parallelism = Math.min(Runtime.getRuntime()
+							.availableProcessors(), scheduler.getMaxConcurrent());
+						target = ReactorBuild.build(builder.cachedProject, parallelism,
+							settings.priority, builder.err);
+					}
+					else project.build(true);
+					paths = target.getClassPath(false).split(File.pathSeparator);
+				}
+				finally {
+					FlightRecorder.end(build, project.getArtifactId(),
+						paths == null ? -1 : paths.length, paths != null ? "ok" : "failed");
+				}
+				if (mainClass == null) {
+					mainClass = target.getMainClass();
+				}
+				classPathEntries = paths.length;
+				if (builder.temporaryDirectory != null) {
+					// the temporary project is discarded, but helper classes are
+					// loaded lazily: hold on to all of its build output
+					final Map<String, byte[]> resources =
+						new HashMap<String, byte[]>();
+					classLoader = new MemoryClassLoader(readClasses(new File(paths[0]),
+						resources), resources, makeClassLoader(Arrays.copyOfRange(paths,
+							1, paths.length)));
+				}
+				else classLoader = makeClassLoader(paths);
+			}
+			if (mainClass == null) {
+				throw new ScriptException("No main class found for file " + file);
+			}
+
+			// load main class
+			final FlightRecorder.Event load = FlightRecorder.LOAD_CLASS.begin();
+			Class<?> clazz = null;
+			try {
+				clazz = classLoader.loadClass(mainClass);
+			}
+			finally {
+				FlightRecorder.end(load, mainClass, classPathEntries,
+					clazz != null ? "ok" : "failed");
+			}
+			cache(cacheKey, clazz, speculative);
+			stats.compiled(clazz, System.nanoTime() - start);
+			outcome = "ok";
+			return clazz;
+		}
+		catch (Exception e) {
+			stats.compileFailed(System.nanoTime() - start);
+			if (writer != null) {
+				// keep the report in order with the compiler's messages
+				if (!builder.report(e)) {
+					final PrintWriter err = new PrintWriter(writer);
+					e.printStackTrace(err);
+					err.flush();
+				}
+			}
+			else {
+				if (e instanceof ScriptException) throw (ScriptException) e;
+				throw new ScriptException(e);
+			}
+		}
+		finally {
+			builder.cleanup();
+			if (admitted) scheduler.release();
+			FlightRecorder.end(event, null, classPathEntries, outcome);
+			FlightRecorder.setScript(previousScript);
+		}
+		return null;
+	}
+
+	/**
+	 * Compiles and runs the specified {@code .java} class. If a filename is set
+	 * in the engine scope bindings via the {@link ScriptEngine#FILENAME} key,
+	 * this method compiles that file and returns its resulting main class
+	 * instead.
+	 *
+	 * @param reader the reader producing the source code for a Java class
+	 * @return the compiled Java class as {@link Class}.
+	 */
+	public Class<?> compile(Reader reader) throws ScriptException {
+		String script;
+		try {
+			script = getReaderContentsAsString(reader);
+		}
+		catch (IOException e) {
+			throw new ScriptException(e);
+		}
+		return compile(script);
+	}
+
+	/**
+	 * Checks whether the specified {@code .java} class compiles, without
+	 * producing any classes.
+	 * <p>
+	 * The source code is merely parsed and attributed by {@code javac}, in
+	 * memory: no Maven project is written, nothing is packaged and nothing is
+	 * loaded. The class is checked against the JDK if it imports nothing else,
+	 * against its declared dependencies once these were resolved by a previous
+	 * compile, and against the current class path otherwise. Annotation
+	 * processors are not run.
+	 * </p>
+	 * 
+	 * @param script the source code for a Java class
+	 * @return the errors and warnings reported by the compiler; the script
+	 *         compiles if none of them {@link ScriptDiagnostic#isError() is an
+	 *         error}
+	 * @throws ScriptException if the script could not be checked at all
+	 */
+	public List<ScriptDiagnostic> check(final String script)
+		throws ScriptException
+	{
+		try {
+			final String mainClass = getFullClassName(new BufferedReader(
+				new StringReader(script)), "Script");
+			final Map<String, String> sources = new LinkedHashMap<String, String>();
+			sources.put(mainClass.replace('.', '/') + ".java", script);
+
+			final String classPath;
+			if (JdkImports.isJdkOnly(script)) classPath = "";
+			else {
+				final List<Coordinate> declared =
+					DeclaredDependencies.parse(new BufferedReader(new StringReader(
+						script)), mainClass);
+				final List<File> resolved = declared == null ? null
+					: DeclaredDependencies.getResolved(declared);
+				final List<File> files = resolved != null ? resolved
+					: scanClassPath();
+				final String[] paths = new String[files.size()];
+				for (int i = 0; i < paths.length; i++) {
+					paths[i] = files.get(i).getPath();
+				}
+				classPath = join(paths);
+			}
+
+			final List<String> options =
+				new ArrayList<String>(getEffectiveProfile().getOptions());
+			options.add("-proc:none");
+			final CompileScheduler scheduler = CompileScheduler.getDefault();
+			scheduler.acquire(getCompilePriority());
+			try {
+				return InMemoryCompiler.check(sources, classPath, options);
+			}
+			finally {
+				scheduler.release();
+			}
+		}
+		catch (final IOException e) {
+			throw new ScriptException(e);
+		}
+	}
+
+	/**
+	 * Announces a new revision of the script being edited.
+	 * <p>
+	 * Once no further revision is announced for a short while (see
+	 * {@link #setSpeculationDelay(long)}), the latest revision is compiled in
+	 * the background, with the compiler profile, priority and verbosity bound
+	 * at the time of this call. Each new revision supersedes the previous one:
+	 * a compile that has not started yet is cancelled, and the result of one
+	 * that is already running is discarded. When the script is eventually run,
+	 * its class is usually ready, or at least compiling already. Compiler
+	 * errors are not reported until then.
+	 * </p>
+	 * <p>
+	 * This is meant to be called by script editors whenever the text changes.
+	 * The {@link ScriptEngine#FILENAME} binding is ignored.
+	 * </p>
+	 * 
+	 * @param script the current source code for a Java class
+	 */
+	public void sourceChanged(final String script) {
+		if (script == null) return;
+		// NB: The bindings are not to be read from the background thread.
+		final Settings settings = settings();
+		speculation.submit(cacheKey(settings.profile, script),
+			new Callable<Class<?>>()
+			{
+
+				@Override
+				public Class<?> call() throws Exception {
+					return compile(singleSource(script), null, null, settings, true);
+				}
+			});
+	}
+
+	/**
+	 * Sets how long to wait for further revisions before compiling a revision
+	 * announced via {@link #sourceChanged(String)} in the background.
+	 * 
+	 * @param delay the delay in milliseconds, by default
+	 *          {@value SpeculativeCompiler#DEFAULT_DELAY}
+	 */
+	public void setSpeculationDelay(final long delay) {
+		speculation.setDelay(delay);
+	}
+
+	/**
+	 * Cancels the background compile of the latest revision announced via
+	 * {@link #sourceChanged(String)}, e.g. when the editor is closed.
+	 */
+	public void cancelSpeculation() {
+		speculation.cancel();
+	}
+
+	/**
+	 * Gets the compiler profile used by default.
+	 * 
+	 * @return the profile used unless overridden via the {@value #PROFILE}
+	 *         binding
+	 */
+	public CompilerProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Sets the compiler profile used by default.
+	 * 
+	 * @param profile the profile to use unless overridden via the
+	 *          {@value #PROFILE} binding
+	 */
+	public void setProfile(final CompilerProfile profile) {
+		if (profile == null) throw new NullPointerException("profile");
+		this.profile = profile;
+	}
+
+	/**
+	 * Gets the statistics this engine records its compiles and evaluations in.
+	 * 
+	 * @return the statistics
+	 */
+	public JavaEngineStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Sets the statistics to record compiles and evaluations in, e.g. to share
+	 * them between engines.
+	 * 
+	 * @param stats the statistics
+	 */
+	void setStats(final JavaEngineStats stats) {
+		if (stats == null) throw new NullPointerException("stats");
+		this.stats = stats;
+	}
+
+	/**
+	 * Determines the compiler profile to use, giving precedence to the
+	 * {@value #PROFILE} binding.
+	 */
+	private CompilerProfile getEffectiveProfile() {
+		final Object value = get(PROFILE);
+		if (value == null) return profile;
+		if (value instanceof CompilerProfile) return (CompilerProfile) value;
+		return CompilerProfile.forName(value.toString());
+	}
+
+	/**
+	 * Reads the bindings configuring a compile, on the calling thread.
+	 */
+	private Settings settings() {
+		return new Settings(getEffectiveProfile(), getCompilePriority(), "true"
+			.equals(get(VERBOSE)), "true".equals(get(DEBUG)));
+	}
+
+	/**
+	 * Caches a compiled class, unless it was compiled speculatively for a
+	 * revision that has been superseded in the meantime.
+	 */
+	private void cache(final String cacheKey, final Class<?> clazz,
+		final boolean speculative)
+	{
+		if (cacheKey == null) return;
+		if (speculative && Thread.currentThread().isInterrupted()) return;
+		classCache.put(cacheKey, clazz);
+	}
+
+	/**
+	 * Determines the priority of compiles, as set via the
+	 * {@value #COMPILE_PRIORITY} binding.
+	 */
+	private CompileScheduler.Priority getCompilePriority() {
+		final Object value = get(COMPILE_PRIORITY);
+		if (value == null) return CompileScheduler.Priority.INTERACTIVE;
+		if (value instanceof CompileScheduler.Priority) {
+			return (CompileScheduler.Priority) value;
+		}
+		return CompileScheduler.Priority.forName(value.toString());
+	}
+
+	/**
+	 * Compiles the sources of a temporary project directly in memory, bypassing
+	 * MiniMaven's build (and hence the packaging).
+	 * 
+	 * @param builder the builder holding the temporary project
+	 * @param profile the compiler profile providing the {@code javac} options
+	 * @return the class loader for the compiled classes
+	 */
+	private ClassLoader compileDirectly(final Builder builder,
+		final CompilerProfile profile) throws IOException,
+		ParserConfigurationException, SAXException, ScriptException
+	{
+		final MavenProject project = builder.project;
+		// the first class path element is the project's own build target
+		final String[] paths =
+			project.getClassPath(false).split(File.pathSeparator);
+		final String[] dependencies = Arrays.copyOfRange(paths, 1, paths.length);
+
+		final Map<String, String> sources = new LinkedHashMap<String, String>();
+		readSources(project.getSourceDirectory(), "", sources);
+		final Writer output =
+			builder.err == null ? null : new OutputStreamWriter(builder.err);
+		final Map<String, byte[]> resources = new HashMap<String, byte[]>();
+		final Map<String, byte[]> classes = InMemoryCompiler.compile(sources,
+			join(dependencies), profile.getOptions(), output, resources);
+		return new MemoryClassLoader(classes, resources, makeClassLoader(
+			dependencies));
+	}
+
+	/**
+	 * Determines whether the specified file is an artifact that can be loaded
+	 * without compiling, i.e. a {@code .jar} file or a class directory.
+	 * 
+	 * @param file the file set via {@link ScriptEngine#FILENAME}
+	 * @return whether the file is prebuilt
+	 */
+	private static boolean isPrebuilt(final File file) {
+		if (file.isDirectory()) return !isSourceDirectory(file);
+		return file.getName().endsWith(".jar");
+	}
+
+	/**
+	 * Determines whether the specified file is a {@code .java} file that is not
+	 * part of a Maven project, i.e. whether it is to be compiled like a script.
+	 * 
+	 * @param file the file set via {@link ScriptEngine#FILENAME}
+	 * @return whether the file is a stand-alone {@code .java} file
+	 * @throws ScriptException if the file's directory does not match its
+	 *           package
+	 */
+	private static boolean isStandalone(final File file) throws IOException,
+		ScriptException
+	{
+		if (!file.isFile() || !file.getName().endsWith(".java")) return false;
+		return getProjectPOM(file, getFullClassName(file)) == null;
+	}
+
+	/**
+	 * Determines whether the specified directory holds sources rather than
+	 * classes, i.e. contains {@code .java} files but no {@code .class} files.
+	 * 
+	 * @param directory the directory set via {@link ScriptEngine#FILENAME}
+	 * @return whether the directory is to be compiled as one unit
+	 */
+	private static boolean isSourceDirectory(final File directory) {
+		final int[] counts = new int[2];
+		countFiles(directory, counts);
+		return counts[0] > 0 && counts[1] == 0;
+	}
+
+	private static void countFiles(final File directory, final int[] counts) {
+		final File[] list = directory.listFiles();
+		if (list == null) return;
+		for (final File file : list) {
+			final String name = file.getName();
+			if (file.isDirectory()) countFiles(file, counts);
+			else if (name.endsWith(".java")) counts[0]++;
+			else if (name.endsWith(".class")) counts[1]++;
+		}
+	}
+
+	/**
+	 * Loads the main class of a prebuilt {@code .jar} file or class directory.
+	 * <p>
+	 * The main class is the {@code Main-Class} named in the manifest. For a
+	 * class directory without a manifest, such as Maven's
+	 * {@code target/classes}, it is the main class of the enclosing Maven
+	 * project instead. The class is loaded by a class loader delegating to the
+	 * context class loader, like compiled classes, and cached until any file of
+	 * the artifact is modified.
+	 * </p>
+	 * 
+	 * @param file the {@code .jar} file or class directory
+	 * @return the main class
+	 * @throws ScriptException if there is no main class
+	 */
+	private Class<?> loadPrebuilt(final File file) throws IOException,
+		ParserConfigurationException, SAXException, ScriptException
+	{
+		final String mainClass = getPrebuiltMainClass(file);
+		if (mainClass == null) {
+			throw new ScriptException("No main class found for " + file);
+		}
+		final String cacheKey =
+			"prebuilt:" + file.getCanonicalPath() + ":" + lastModified(file);
+		final Class<?> cached = classCache.get(cacheKey);
+		if (cached != null) return cached;
+
+		final ClassLoader classLoader =
+			makeClassLoader(new String[] { file.getAbsolutePath() });
+		final Class<?> clazz;
+		try {
+			clazz = classLoader.loadClass(mainClass);
+		}
+		catch (final ClassNotFoundException e) {
+			throw new ScriptException("Main class " + mainClass +
+				" not found in " + file);
+		}
+		classCache.put(cacheKey, clazz);
+		return clazz;
+	}
+
+	/**
+	 * Determines the main class of a prebuilt {@code .jar} file or class
+	 * directory.
+	 * 
+	 * @return the name of the main class, or null
+	 */
+	private static String getPrebuiltMainClass(final File file)
+		throws IOException, ParserConfigurationException, SAXException
+	{
+		final Manifest manifest;
+		if (file.isDirectory()) {
+			final File path = new File(file, "META-INF/MANIFEST.MF");
+			if (path.exists()) {
+				final InputStream in = new FileInputStream(path);
+				try {
+					manifest = new Manifest(in);
+				}
+				finally {
+					in.close();
+				}
+			}
+			else manifest = null;
+		}
+		else {
+			final JarFile jar = new JarFile(file);
+			try {
+				manifest = jar.getManifest();
+			}
+			finally {
+				jar.close();
+			}
+		}
+		final String mainClass = manifest == null ? null : manifest
+			.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+		if (mainClass != null || !file.isDirectory()) return mainClass;
+
+		// target/classes of a Maven project
+		final File target = file.getAbsoluteFile().getParentFile();
+		final File pom = target == null || target.getParentFile() == null ? null
+			: new File(target.getParentFile(), "pom.xml");
+		if (pom == null || !pom.exists()) return null;
+		return getPOMMainClass(pom);
+	}
+
+	/**
+	 * Reads the main class from the {@code maven-jar-plugin}'s configuration in
+	 * a {@code pom.xml}, like MiniMaven does, but without resolving the
+	 * project's parents or dependencies.
+	 * 
+	 * @param pom the {@code pom.xml} file
+	 * @return the name of the main class, or null
+	 */
+	private static String getPOMMainClass(final File pom) throws IOException,
+		ParserConfigurationException, SAXException
+	{
+		final Element project = DocumentBuilderFactory.newInstance()
+			.newDocumentBuilder().parse(pom).getDocumentElement();
+		final Element plugins = getChild(getChild(project, "build"), "plugins");
+		if (plugins == null) return null;
+		for (Node node = plugins.getFirstChild(); node != null; node =
+			node.getNextSibling())
+		{
+			if (!"plugin".equals(node.getNodeName())) continue;
+			final Element plugin = (Element) node;
+			final Element artifactId = getChild(plugin, "artifactId");
+			if (artifactId == null || !"maven-jar-plugin".equals(artifactId
+				.getTextContent().trim()))
+			{
+				continue;
+			}
+			Element element = getChild(plugin, "configuration");
+			element = getChild(getChild(getChild(element, "archive"), "manifest"),
+				"mainClass");
+			if (element == null) continue;
+			final String mainClass = element.getTextContent().trim();
+			if (!mainClass.startsWith("${")) return mainClass;
+			// a property of the same POM; those of parents are not known here
+			final Element property = getChild(getChild(project, "properties"),
+				mainClass.substring(2, mainClass.length() - 1));
+			return property == null ? null : property.getTextContent().trim();
+		}
+		return null;
+	}
+
+	private static Element getChild(final Element parent, final String tag) {
+		if (parent == null) return null;
+		for (Node node = parent.getFirstChild(); node != null; node =
+			node.getNextSibling())
+		{
+			if (node instanceof Element && tag.equals(node.getNodeName())) {
+				return (Element) node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param file a file or directory
+	 * @return the last time the file, or any file in the directory, was
+	 *         modified
+	 */
+	private static long lastModified(final File file) {
+		long result = file.lastModified();
+		final File[] list = file.listFiles();
+		if (list == null) return result;
+		for (final File child : list) {
+			result = Math.max(result, lastModified(child));
+		}
+		return result;
+	}
+
+	/**
+	 * Wraps the source code of a single class whose name is not known yet.
+	 * 
+	 * @param script the source code
+	 * @return the sources to compile
+	 */
+	private static Map<String, String> singleSource(final String script) {
+		return Collections.singletonMap(SCRIPT_NAME, script);
+	}
+
+	/**
+	 * Reads the {@code .java} files below the specified directory, to compile
+	 * them as one unit.
+	 * <p>
+	 * The main class is the only one with a {@code main} method, else the only
+	 * public one, else the first one by path.
+	 * </p>
+	 * 
+	 * @param directory the directory
+	 * @return the source code by path, the main class' first
+	 */
+	private static Map<String, String> readSources(final File directory)
+		throws IOException
+	{
+		final Map<String, String> sorted = new TreeMap<String, String>();
+		readSources(directory, "", sorted);
+		final List<String> withMain = new ArrayList<String>();
+		final List<String> withPublic = new ArrayList<String>();
+		for (final Map.Entry<String, String> entry : sorted.entrySet()) {
+			final String source = entry.getValue();
+			if (MAIN_METHOD.matcher(source).find()) withMain.add(entry.getKey());
+			if (getFullClassName(new BufferedReader(new StringReader(source)),
+				null) != null) withPublic.add(entry.getKey());
+		}
+		final String main = withMain.size() == 1 ? withMain.get(0) : withPublic
+			.size() == 1 ? withPublic.get(0) : null;
+		final Map<String, String> sources = new LinkedHashMap<String, String>();
+		if (main != null) sources.put(main, sorted.get(main));
+		sources.putAll(sorted);
+		return sources;
+	}
+
+	/**
+	 * Names the source files after the classes they declare.
+	 * 
+	 * @param sources the source code, by file name
+	 * @param strict whether the first source, i.e. the main class, must declare
+	 *          a public class
+	 * @return the source code by path relative to the source root, or null if
+	 *         {@code strict} and the first source has no public class
+	 */
+	private static Map<String, String> nameSources(
+		final Map<String, String> sources, final boolean strict)
+		throws IOException
+	{
+		final Map<String, String> result = new LinkedHashMap<String, String>();
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			String name = entry.getKey();
+			name = name.substring(name.lastIndexOf('/') + 1);
+			if (name.endsWith(".java")) {
+				name = name.substring(0, name.length() - 5);
+			}
+			final String className = getFullClassName(new BufferedReader(
+				new StringReader(entry.getValue())), strict && result.isEmpty()
+					? null : name);
+			if (className == null) return null;
+			result.put(className.replace('.', '/') + ".java", entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the main class of sources named by
+	 * {@link #nameSources(Map, boolean)}.
+	 * 
+	 * @param sources the source code by path relative to the source root
+	 * @return the name of the first source's class
+	 */
+	private static String getMainClass(final Map<String, String> sources) {
+		final String path = sources.keySet().iterator().next();
+		return path.substring(0, path.length() - 5).replace('/', '.');
+	}
+
+	/**
+	 * Compiles a script directly in memory against the JDK alone, if its
+	 * imports suggest that it does not need anything else.
+	 * <p>
+	 * This skips the class path scan, faking the POMs, the MiniMaven build and
+	 * the packaging. Should the script fail to compile this way (e.g. because
+	 * it refers to classes by their fully-qualified names), null is returned,
+	 * and the caller is expected to compile the script the regular way, which
+	 * also reports any compile errors.
+	 * </p>
+	 * 
+	 * @param unit the source code, by file name
+	 * @param profile the compiler profile providing the {@code javac} options
+	 * @return the compiled main class, or null
+	 */
+	private static Class<?> compileJdkOnly(final Map<String, String> unit,
+		final CompilerProfile profile) throws IOException
+	{
+		if (!InMemoryCompiler.isAvailable()) return null;
+		for (final String script : unit.values()) {
+			if (script == null || !JdkImports.isJdkOnly(script)) return null;
+		}
+		final Map<String, String> sources = nameSources(unit, true);
+		if (sources == null) return null;
+		final String mainClass = getMainClass(sources);
+
+		// annotation processors would need to be on the class path, too
+		final List<String> options = new ArrayList<String>(profile.getOptions());
+		options.add("-proc:none");
+		try {
+			final Map<String, byte[]> classes =
+				InMemoryCompiler.compile(sources, "", options, null);
+			return new MemoryClassLoader(classes, Thread.currentThread()
+				.getContextClassLoader()).loadClass(mainClass);
+		}
+		catch (final ScriptException e) {
+			return null;
+		}
+		catch (final ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Makes a class loader for the specified class path elements.
+	 * 
+	 * @param paths the {@code .jar} files and class directories
+	 * @return the class loader, delegating to the context class loader
+	 */
+	private static URLClassLoader makeClassLoader(final String[] paths)
+		throws MalformedURLException
+	{
+		URL[] urls = new URL[paths.length];
+		for (int i = 0; i < urls.length; i++)
+			urls[i] =
+				new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
+
+		return new URLClassLoader(urls, Thread.currentThread()
+			.getContextClassLoader());
+	}
+
+	/**
+	 * Reads the byte code of all classes in a {@code .jar} file or class
+	 * directory, and all other files in it.
+	 * 
+	 * @param target the {@code .jar} file or class directory
+	 * @param resources the map to add the other files to, by path
+	 * @return the byte code, by binary class name
+	 */
+	private static Map<String, byte[]> readClasses(final File target,
+		final Map<String, byte[]> resources) throws IOException
+	{
+		final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		if (target.isDirectory()) {
+			readClasses(target, "", classes, resources);
+			return classes;
+		}
+		final JarFile jar = new JarFile(target);
+		try {
+			for (final JarEntry entry : Collections.list(jar.entries())) {
+				if (entry.isDirectory()) continue;
+				final InputStream in = jar.getInputStream(entry);
+				try {
+					addOutput(entry.getName(), readFully(in), classes, resources);
+				}
+				finally {
+					in.close();
+				}
+			}
+		}
+		finally {
+			jar.close();
+		}
+		return classes;
+	}
+
+	private static void readClasses(final File directory, final String prefix,
+		final Map<String, byte[]> classes, final Map<String, byte[]> resources)
+		throws IOException
+	{
+		final File[] list = directory.listFiles();
+		if (list == null) return;
+		for (final File file : list) {
+			final String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				readClasses(file, path + "/", classes, resources);
+				continue;
+			}
+			final InputStream in = new FileInputStream(file);
+			try {
+				addOutput(path, readFully(in), classes, resources);
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+
+	private static void addOutput(final String path, final byte[] bytes,
+		final Map<String, byte[]> classes, final Map<String, byte[]> resources)
+	{
+		if (path.endsWith(".class")) {
+			classes.put(path.substring(0, path.length() - 6).replace('/', '.'),
+				bytes);
+		}
+		else resources.put(path, bytes);
+	}
+
+	private static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[16384];
+		for (;;) {
+			final int count = in.read(buffer);
+			if (count < 0) break;
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads all {@code .java} files below the specified directory.
+	 * 
+	 * @param directory the directory to read
+	 * @param prefix the path of the directory relative to the source root
+	 * @param sources the map to add the source code to, by relative path
+	 */
+	private static void readSources(final File directory, final String prefix,
+		final Map<String, String> sources) throws IOException
+	{
+		final File[] list = directory.listFiles();
+		if (list == null) return;
+		for (final File file : list) {
+			final String path = prefix + file.getName();
+			if (file.isDirectory()) readSources(file, path + "/", sources);
+			else if (path.endsWith(".java")) {
+				final Reader reader = new FileReader(file);
+				try {
+					sources.put(path, getReaderContentsAsString(reader));
+				}
+				finally {
+					reader.close();
+				}
+			}
+		}
+	}
+
+	private static String join(final String[] paths) {
+		final StringBuilder builder = new StringBuilder();
+		for (final String path : paths) {
+			if (builder.length() > 0) builder.append(File.pathSeparator);
+			builder.append(path);
 		}
-		return eval(script);
+		return builder.toString();
 	}
 
 	/**
-	 * Compiles and runs the specified {@code .java} class. If a filename is set
-	 * in the engine scope bindings via the {@link ScriptEngine#FILENAME} key,
-	 * this method compiles that file and returns its resulting main class
-	 * instead.
+	 * Computes the key identifying classes compiled from the specified source
+	 * code in {@link #classCache}.
 	 * 
-	 * @param script the source code for a Java class
-	 * @return the compiled Java class as {@link Class}.
+	 * @param profile the compiler profile
+	 * @param source the source code
+	 * @return the key
 	 */
-	public Class<?> compile(String script) throws ScriptException {
-		// get filename from engine scope bindings
-		final String path = (String) get(FILENAME);
-		File file = path == null ? null : new File(path);
+	private static String cacheKey(final CompilerProfile profile,
+		final String source)
+	{
+		return profile.name() + ":" + digest(source);
+	}
 
-		final Writer writer = getContext().getErrorWriter();
-		final Builder builder = new Builder();
-		try {
-			if (file != null && file.exists()) {
-				// if the filename set in engine scope bindings is valid,
-				// ignore the given script and use that file instead.
-				builder.initialize(file, writer);
-			}
-			else {
-				// script may be null, but then we cannot create a StringReader for it,
-				// therefore null is passed if script is null.
-				final Reader reader =
-					(script == null) ? null : new StringReader(script);
-				builder.initialize(reader, writer);
-			}
-			final MavenProject project = builder.project;
-			String mainClass = builder.mainClass;
+	/**
+	 * Computes the key identifying classes compiled from the specified sources
+	 * in {@link #classCache}; a single source has the same key as its source
+	 * code.
+	 * 
+	 * @param profile the compiler profile
+	 * @param sources the source code, by file name
+	 * @return the key
+	 */
+	private static String cacheKey(final CompilerProfile profile,
+		final Map<String, String> sources)
+	{
+		return profile.name() + ":" + digest(sources);
+	}
 
-			project.build(true);
-			if (mainClass == null) {
-				mainClass = project.getMainClass();
-				if (mainClass == null) {
-					throw new ScriptException("No main class found for file " + file);
-				}
+	/**
+	 * Computes a digest identifying the specified source code.
+	 * 
+	 * @param source the source code
+	 * @return the SHA-1 digest, as hex string
+	 */
+	static String digest(final String source) {
+		try {
+			final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			final byte[] hash = sha1.digest(source.getBytes("UTF-8"));
+			final StringBuilder builder = new StringBuilder();
+			for (final byte b : hash) {
+				builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+				builder.append(Character.forDigit(b & 0xf, 16));
 			}
-
-			// make class loader
-			String[] paths = project.getClassPath(false).split(File.pathSeparator);
-			URL[] urls = new URL[paths.length];
-			for (int i = 0; i < urls.length; i++)
-				urls[i] =
-					new URL("file:" + paths[i] + (paths[i].endsWith(".jar") ? "" : "/"));
-
-			final URLClassLoader classLoader =  new URLClassLoader(urls, Thread.currentThread()
-					.getContextClassLoader());
-
-			// load main class
-			return classLoader.loadClass(mainClass);
+			return builder.toString();
 		}
-		catch (Exception e) {
-			if (writer != null) {
-				final PrintWriter err = new PrintWriter(writer);
-				e.printStackTrace(err);
-				err.flush();
-			}
-			else {
-				if (e instanceof ScriptException) throw (ScriptException) e;
-				throw new ScriptException(e);
-			}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
 		}
-		finally {
-			builder.cleanup();
+		catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
 		}
-		return null;
 	}
 
 	/**
-	 * Compiles and runs the specified {@code .java} class. If a filename is set
-	 * in the engine scope bindings via the {@link ScriptEngine#FILENAME} key,
-	 * this method compiles that file and returns its resulting main class
-	 * instead.
-	 *
-	 * @param reader the reader producing the source code for a Java class
-	 * @return the compiled Java class as {@link Class}.
+	 * Computes a digest identifying the specified sources, including their
+	 * order and file names; a single script has the digest of its source code.
+	 * 
+	 * @param sources the source code, by file name
+	 * @return the SHA-1 digest, as hex string
 	 */
-	public Class<?> compile(Reader reader) throws ScriptException {
-		String script;
-		try {
-			script = getReaderContentsAsString(reader);
+	static String digest(final Map<String, String> sources) {
+		if (sources.size() == 1 && sources.containsKey(SCRIPT_NAME)) {
+			return digest(sources.get(SCRIPT_NAME));
 		}
-		catch (IOException e) {
-			throw new ScriptException(e);
+		final StringBuilder builder = new StringBuilder();
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			builder.append(entry.getKey()).append('\0');
+			builder.append(entry.getValue()).append('\0');
 		}
-		return compile(script);
+		return digest(builder.toString());
 	}
 
 	/**
@@ -293,7 +1652,7 @@ public class JavaEngine extends AbstractScriptEngine {
 			builder.project.build();
 		}
 		catch (Throwable t) {
-			printOrThrow(t, errorWriter);
+			printOrThrow(t, errorWriter, builder);
 		}
 		finally {
 			builder.cleanup();
@@ -321,13 +1680,172 @@ public class JavaEngine extends AbstractScriptEngine {
 			}
 		}
 		catch (Throwable t) {
-			printOrThrow(t, errorWriter);
+			printOrThrow(t, errorWriter, builder);
 		}
 		finally {
 			builder.cleanup();
 		}
 	}
 
+	// -- Invocable methods --
+
+	/**
+	 * Calls a static method of the most recently compiled class.
+	 * 
+	 * @param name the name of the static method
+	 * @param args the arguments to pass to the method
+	 * @return the return value of the method, or null if it is {@code void}
+	 * @throws ScriptException if no class has been compiled yet, or if the
+	 *           method threw an exception
+	 * @throws NoSuchMethodException if there is no applicable static method
+	 */
+	@Override
+	public Object invokeFunction(final String name, final Object... args)
+		throws ScriptException, NoSuchMethodException
+	{
+		if (name == null) throw new NullPointerException("name");
+		final Class<?> clazz = compiledClass;
+		if (clazz == null) {
+			throw new ScriptException("No class has been compiled yet");
+		}
+		try {
+			return MethodDispatcher.invokeStatic(clazz, name, args);
+		}
+		catch (final Throwable t) {
+			throw invocationFailure(t);
+		}
+	}
+
+	/**
+	 * Calls a method of the specified object.
+	 * 
+	 * @param thiz the object whose method to call
+	 * @param name the name of the method
+	 * @param args the arguments to pass to the method
+	 * @return the return value of the method, or null if it is {@code void}
+	 * @throws ScriptException if the method threw an exception
+	 * @throws NoSuchMethodException if there is no applicable method
+	 */
+	@Override
+	public Object invokeMethod(final Object thiz, final String name,
+		final Object... args) throws ScriptException, NoSuchMethodException
+	{
+		if (thiz == null) throw new IllegalArgumentException("thiz is null");
+		if (name == null) throw new NullPointerException("name");
+		try {
+			return MethodDispatcher.invokeVirtual(thiz, name, args);
+		}
+		catch (final Throwable t) {
+			throw invocationFailure(t);
+		}
+	}
+
+	/**
+	 * Implements an interface using static methods of the most recently compiled
+	 * class.
+	 * 
+	 * @param clasz the interface to implement
+	 * @return the implementation, or null if the compiled class lacks some of the
+	 *         interface's methods
+	 */
+	@Override
+	public <T> T getInterface(final Class<T> clasz) {
+		final Class<?> clazz = compiledClass;
+		if (clazz == null) return null;
+		return implement(clasz, clazz, true, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable
+			{
+				return dispatch(proxy, null, clazz, method, args);
+			}
+		});
+	}
+
+	/**
+	 * Implements an interface using methods of the specified object.
+	 * 
+	 * @param thiz the object providing the methods
+	 * @param clasz the interface to implement
+	 * @return the implementation, or null if the object lacks some of the
+	 *         interface's methods
+	 */
+	@Override
+	public <T> T getInterface(final Object thiz, final Class<T> clasz) {
+		if (thiz == null) throw new IllegalArgumentException("thiz is null");
+		if (clasz.isInstance(thiz)) return clasz.cast(thiz);
+		return implement(clasz, thiz.getClass(), false, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable
+			{
+				return dispatch(proxy, thiz, thiz.getClass(), method, args);
+			}
+		});
+	}
+
+	private static <T> T implement(final Class<T> iface, final Class<?> clazz,
+		final boolean isStatic, final InvocationHandler handler)
+	{
+		if (iface == null || !iface.isInterface()) {
+			throw new IllegalArgumentException("Not an interface: " + iface);
+		}
+		for (final Method method : iface.getMethods()) {
+			if (method.getDeclaringClass() == Object.class) continue;
+			if (!MethodDispatcher.hasMethod(clazz, method.getName(), isStatic,
+				method.getParameterTypes().length))
+			{
+				return null;
+			}
+		}
+		final Object proxy = Proxy.newProxyInstance(iface.getClassLoader(),
+			new Class<?>[] { iface }, handler);
+		return iface.cast(proxy);
+	}
+
+	private static Object dispatch(final Object proxy, final Object thiz,
+		final Class<?> clazz, final Method method, final Object[] args)
+		throws Throwable
+	{
+		if (method.getDeclaringClass() == Object.class) {
+			if (method.getName().equals("equals")) return proxy == args[0];
+			if (method.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			return "Proxy for " + (thiz == null ? clazz : thiz);
+		}
+		if (thiz == null) {
+			return MethodDispatcher.invokeStatic(clazz, method.getName(), args);
+		}
+		return MethodDispatcher.invokeVirtual(thiz, method.getName(), args);
+	}
+
+	/**
+	 * Translates a failure of an invoked method into what {@link Invocable}
+	 * callers expect.
+	 */
+	private static ScriptException invocationFailure(final Throwable t)
+		throws NoSuchMethodException
+	{
+		if (t instanceof NoSuchMethodException) throw (NoSuchMethodException) t;
+		if (t instanceof Error) throw (Error) t;
+		return scriptException(t);
+	}
+
+	/**
+	 * Wraps a failure that is not an {@link Error} into a
+	 * {@link ScriptException}, including direct subclasses of {@link Throwable}
+	 * that {@link ScriptException#ScriptException(Exception)} cannot take.
+	 */
+	private static ScriptException scriptException(final Throwable t) {
+		if (t instanceof Exception) return new ScriptException((Exception) t);
+		final ScriptException e = new ScriptException(String.valueOf(t));
+		e.initCause(t);
+		return e;
+	}
+
 	/**
 	 * Reports an exception.
 	 * <p>
@@ -338,19 +1856,44 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * 
 	 * @param t the exception
 	 * @param errorWriter the error writer, or null
+	 * @param builder the builder whose output the report should follow
 	 */
-	private void printOrThrow(Throwable t, Writer errorWriter) {
+	private void printOrThrow(Throwable t, Writer errorWriter,
+		Builder builder)
+	{
 		RuntimeException e =
 			t instanceof RuntimeException ? (RuntimeException) t
 				: new RuntimeException(t);
 		if (errorWriter == null) {
 			throw e;
 		}
+		if (builder.report(e)) return;
 		final PrintWriter err = new PrintWriter(errorWriter);
 		e.printStackTrace(err);
 		err.flush();
 	}
 
+	/**
+	 * The bindings configuring a compile, read once on the thread requesting
+	 * it, as {@link JavaEngineBindings} are not to be read concurrently.
+	 */
+	private static class Settings {
+
+		private final CompilerProfile profile;
+		private final CompileScheduler.Priority priority;
+		private final boolean verbose, debug;
+
+		private Settings(final CompilerProfile profile,
+			final CompileScheduler.Priority priority, final boolean verbose,
+			final boolean debug)
+		{
+			this.profile = profile;
+			this.priority = priority;
+			this.verbose = verbose;
+			this.debug = debug;
+		}
+	}
+
 	/**
 	 * A wrapper around a (possibly only temporary) project.
 	 * 
@@ -359,7 +1902,11 @@ public class JavaEngine extends AbstractScriptEngine {
 	 */
 	private class Builder {
 
+		private final Settings settings;
 		private PrintStream err;
+		private AsyncBuildLog log;
+		private TemporaryWorkspace workspace;
+		private ProjectCache.CachedProject cachedProject;
 		private File temporaryDirectory;
 		private String mainClass;
 		private MavenProject project;
@@ -388,28 +1935,31 @@ public class JavaEngine extends AbstractScriptEngine {
 			TransformerFactoryConfigurationError
 		{
 			err = createErrorPrintStream(errorWriter);
-
-			BuildEnvironment env = createBuildEnvironment();
+			workspace = TemporaryWorkspace.getDefault();
 
 			// will throw IOException if file does not exist.
 			temporaryDirectory = null;
 			if (file.getName().equals("pom.xml")) {
-				project = env.parse(file, null);
+				project = parseProject(file);
 			}
 			else {
 				mainClass = getFullClassName(file);
-				project = getMavenProject(env, file, mainClass);
+				project = getMavenProject(this, file, mainClass);
+				// stand-alone .java files are built in a temporary project, too
+				if (workspace.contains(project.getDirectory())) {
+					temporaryDirectory = project.getDirectory();
+				}
 			}
 		}
 
 		/**
-		 * Constructs a wrapper around a possibly temporary project for source code
-		 * generated by a Reader.
+		 * Constructs a wrapper around a temporary project for the given source
+		 * code.
 		 * <p>
 		 * This method is intended to be called only once.
 		 * </p>
 		 * 
-		 * @param reader provides the Java source if {@code file} is {@code null}
+		 * @param sources the Java sources, by file name
 		 * @param errorWriter where to write the error output.
 		 * @throws ScriptException
 		 * @throws IOException
@@ -419,17 +1969,19 @@ public class JavaEngine extends AbstractScriptEngine {
 		 * @throws TransformerException
 		 * @throws TransformerFactoryConfigurationError
 		 */
-		private void initialize(final Reader reader, final Writer errorWriter)
+		private void initialize(final Map<String, String> sources,
+			final Writer errorWriter)
 			throws ScriptException, IOException, ParserConfigurationException,
 			SAXException, TransformerConfigurationException, TransformerException,
 			TransformerFactoryConfigurationError
 		{
 			err = createErrorPrintStream(errorWriter);
+			workspace = TemporaryWorkspace.getDefault();
 
 			BuildEnvironment env = createBuildEnvironment();
 
 			try {
-				project = writeTemporaryProject(env, reader);
+				project = writeTemporaryProject(env, workspace, sources);
 				temporaryDirectory = project.getDirectory();
 				mainClass = project.getMainClass();
 			}
@@ -449,15 +2001,22 @@ public class JavaEngine extends AbstractScriptEngine {
 				return null;
 			}
 
-			// create a PrintStream which redirects output to errorWriter
-			return new PrintStream(new LineOutputStream() {
-
-				@Override
-				public void println(final String line) throws IOException {
-					errorWriter.append(line).append('\n');
-				}
+			// create a PrintStream which redirects output to errorWriter, without
+			// letting a slow writer hold up the build
+			log = new AsyncBuildLog(errorWriter);
+			return new PrintStream(log);
+		}
 
-			});
+		/**
+		 * Reports an exception via the build output.
+		 * 
+		 * @param t the exception to report
+		 * @return false if there is no build output to report to
+		 */
+		private boolean report(final Throwable t) {
+			if (err == null) return false;
+			t.printStackTrace(err);
+			return true;
 		}
 
 		/**
@@ -467,23 +2026,91 @@ public class JavaEngine extends AbstractScriptEngine {
 		 * @return the created {@link BuildEnvironment}.
 		 */
 		private BuildEnvironment createBuildEnvironment() {
-			boolean verbose = "true".equals(get("verbose")) || log().isInfo();
-			boolean debug = "true".equals(get("debug")) || log().isDebug();
-			return new BuildEnvironment(err, true, verbose, debug);
+			return new BuildEnvironment(err, true, isVerbose(), isDebug());
+		}
+
+		private Builder() {
+			this(settings());
+		}
+
+		private Builder(final Settings settings) {
+			this.settings = settings;
+		}
+
+		private boolean isVerbose() {
+			return settings.verbose || log().isInfo();
+		}
+
+		private boolean isDebug() {
+			return settings.debug || log().isDebug();
+		}
+
+		/**
+		 * Parses a Maven project, reusing the result of a previous parse as long
+		 * as the project's POMs are unchanged.
+		 * 
+		 * @param pom the project's {@code pom.xml} file
+		 * @return the project
+		 */
+		private MavenProject parseProject(final File pom) throws IOException,
+			ParserConfigurationException, SAXException
+		{
+			cachedProject = ProjectCache.acquire(pom, err, isVerbose(), isDebug());
+			return cachedProject.getProject();
 		}
 
 		/**
 		 * Cleans up the project, if it was only temporary.
 		 */
 		private void cleanup() {
+			if (cachedProject != null) {
+				cachedProject.release();
+				cachedProject = null;
+			}
 			if (err != null) err.close();
-			if (err != null) err.close();
-			if (temporaryDirectory != null &&
-				!FileUtils.deleteRecursively(temporaryDirectory))
-			{
-				temporaryDirectory.deleteOnExit();
+			if (log != null) {
+				// callers expect to see all messages once the build returns
+				try {
+					log.awaitDrained(AsyncBuildLog.DRAIN_TIMEOUT);
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				log = null;
 			}
+			if (temporaryDirectory != null) {
+				workspace.release(temporaryDirectory);
+				temporaryDirectory = null;
+			}
+		}
+	}
+
+	/**
+	 * Finds the Maven project a {@code .java} file belongs to.
+	 * 
+	 * @param file the {@code .java} file
+	 * @param mainClass the name of the class declared in the file
+	 * @return the {@code pom.xml} file, or null if the file is stand-alone
+	 * @throws ScriptException if the file's directory does not match the
+	 *           class' package
+	 */
+	private static File getProjectPOM(final File file, final String mainClass)
+		throws ScriptException
+	{
+		String path = file.getAbsolutePath();
+		if (!path.replace(File.separatorChar, '.').endsWith(
+			"." + mainClass + ".java"))
+		{
+			throw new ScriptException("Class " + mainClass +
+				" in invalid directory: " + path);
+		}
+		path = path.substring(0, path.length() - mainClass.length() - 5);
+		if (path.replace(File.separatorChar, '/').endsWith("/src/main/java/")) {
+			path = path.substring(0, path.length() - "src/main/java/".length());
+			final File pom = new File(path, "pom.xml");
+			if (pom.exists()) return pom;
 		}
+		return null;
 	}
 
 	/**
@@ -492,7 +2119,7 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * If the file is not part of a valid Maven project, one will be generated.
 	 * </p>
 	 * 
-	 * @param env the {@link BuildEnvironment}
+	 * @param builder the {@link Builder} to parse or generate the project
 	 * @param file the {@code .java} file
 	 * @param mainClass the name of the class to execute
 	 * @return the Maven POM
@@ -504,26 +2131,22 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * @throws TransformerException
 	 * @throws TransformerFactoryConfigurationError
 	 */
-	private MavenProject getMavenProject(final BuildEnvironment env,
+	private MavenProject getMavenProject(final Builder builder,
 		final File file, final String mainClass) throws IOException,
 		ParserConfigurationException, SAXException, ScriptException,
 		TransformerConfigurationException, TransformerException,
 		TransformerFactoryConfigurationError
 	{
-		String path = file.getAbsolutePath();
-		if (!path.replace(File.separatorChar, '.').endsWith(
-			"." + mainClass + ".java"))
-		{
-			throw new ScriptException("Class " + mainClass +
-				" in invalid directory: " + path);
+		final File pom = getProjectPOM(file, mainClass);
+		if (pom != null) return builder.parseProject(pom);
+		final Reader reader = new FileReader(file);
+		try {
+			return writeTemporaryProject(builder.createBuildEnvironment(),
+				builder.workspace, singleSource(getReaderContentsAsString(reader)));
 		}
-		path = path.substring(0, path.length() - mainClass.length() - 5);
-		if (path.replace(File.separatorChar, '/').endsWith("/src/main/java/")) {
-			path = path.substring(0, path.length() - "src/main/java/".length());
-			final File pom = new File(path, "pom.xml");
-			if (pom.exists()) return env.parse(pom, null);
+		finally {
+			reader.close();
 		}
-		return writeTemporaryProject(env, new FileReader(file));
 	}
 
 	/**
@@ -539,13 +2162,26 @@ public class JavaEngine extends AbstractScriptEngine {
 			throw new UnsupportedOperationException();
 		}
 		name = name.substring(0, name.length() - 5);
+		return getFullClassName(new BufferedReader(new FileReader(file)), name);
+	}
 
+	/**
+	 * Determines the class name of a Java class given its source code.
+	 * 
+	 * @param reader the source code; it is closed by this method
+	 * @param name the class name to assume if there is no public class
+	 * @return the class name including the package, or null if {@code name}
+	 *         is null and there is no public class
+	 * @throws IOException
+	 */
+	private static String getFullClassName(final BufferedReader reader,
+		String name) throws IOException
+	{
 		String packageName = "";
 		final Pattern packagePattern =
 			Pattern.compile("package ([a-zA-Z0-9_.]*).*");
 		final Pattern classPattern =
 			Pattern.compile(".*public class ([a-zA-Z0-9_]*).*");
-		final BufferedReader reader = new BufferedReader(new FileReader(file));
 		for (;;) {
 			String line = reader.readLine();
 			if (line == null) break;
@@ -572,15 +2208,21 @@ public class JavaEngine extends AbstractScriptEngine {
 			}
 		}
 		reader.close();
+		if (name == null) return null;
 		return packageName + name; // the 'package' statement must be the first in
 																// the file
 	}
 
 	/**
-	 * Makes a temporary Maven project for a virtual {@code .java} file.
+	 * Makes a temporary Maven project for virtual {@code .java} files.
+	 * <p>
+	 * The main class is the first source's. The dependencies declared in any
+	 * of the sources apply to all of them.
+	 * </p>
 	 * 
 	 * @param env the {@link BuildEnvironment} to store the generated Maven POM
-	 * @param reader the virtual {@code .java} file
+	 * @param workspace the workspace providing the project directory
+	 * @param unit the virtual {@code .java} files, by file name
 	 * @return the generated Maven POM
 	 * @throws IOException
 	 * @throws ParserConfigurationException
@@ -590,40 +2232,82 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * @throws TransformerFactoryConfigurationError
 	 */
 	private static MavenProject writeTemporaryProject(final BuildEnvironment env,
-		final Reader reader) throws IOException, ParserConfigurationException,
-		SAXException, TransformerConfigurationException, TransformerException,
-		TransformerFactoryConfigurationError
+		final TemporaryWorkspace workspace, final Map<String, String> unit)
+		throws IOException, ParserConfigurationException, SAXException,
+		TransformerConfigurationException, TransformerException,
+		TransformerFactoryConfigurationError, ScriptException
 	{
-		final File directory = FileUtils.createTemporaryDirectory("java", "");
-		final File file = new File(directory, ".java");
+		final File directory = workspace.acquire();
+		boolean success = false;
+		try {
+			final Map<String, String> sources = nameSources(unit, false);
+			final String mainClass = getMainClass(sources);
+			List<Coordinate> declared = null;
+			for (final Map.Entry<String, String> entry : sources.entrySet()) {
+				final File result =
+					new File(directory, "src/main/java/" + entry.getKey());
+				final File parent = result.getParentFile();
+				if (!parent.isDirectory() && !parent.mkdirs()) {
+					throw new IOException("Could not make directory for " + result);
+				}
 
-		final BufferedReader in = new BufferedReader(reader);
-		final Writer out = new FileWriter(file);
-		for (;;) {
-			final String line = in.readLine();
-			if (line == null) break;
-			out.write(line);
-			out.write('\n');
-		}
-		in.close();
-		out.close();
+				final BufferedReader in =
+					new BufferedReader(new StringReader(entry.getValue()));
+				final Writer out = new FileWriter(result);
+				for (;;) {
+					final String line = in.readLine();
+					if (line == null) break;
+					out.write(line);
+					out.write('\n');
+				}
+				in.close();
+				out.close();
+
+				// use only the declared dependencies, if any
+				final List<Coordinate> dependencies =
+					DeclaredDependencies.parse(result);
+				if (dependencies == null) continue;
+				if (declared == null) declared = new ArrayList<Coordinate>();
+				declared.addAll(dependencies);
+			}
+			final List<File> resolved =
+				declared == null ? null : DeclaredDependencies.getResolved(declared);
+			final List<Coordinate> dependencies;
+			if (declared == null) dependencies = getAllDependencies(env);
+			else if (resolved == null) dependencies = declared;
+			else dependencies = fakeDependencies(env, resolved);
 
-		final String mainClass = getFullClassName(file);
-		final File result =
-			new File(directory, "src/main/java/" + mainClass.replace('.', '/') +
-				".java");
-		if (!result.getParentFile().mkdirs()) {
-			throw new IOException("Could not make directory for " + result);
+			// write POM
+			final String artifactId =
+				mainClass.substring(mainClass.lastIndexOf('.') + 1);
+			final FlightRecorder.Event event = FlightRecorder.FAKE_POM.begin();
+			MavenProject project = null;
+			try {
+				project =
+					fakePOM(env, directory, artifactId, mainClass, true, dependencies);
+			}
+			finally {
+				FlightRecorder.end(event, mainClass, dependencies.size(),
+					project != null ? "ok" : "failed");
+			}
+
+			if (declared != null && resolved == null) {
+				// resolve from the local repository, once per set of dependencies;
+				// the first class path element is the project's own build target
+				final String[] paths =
+					project.getClassPath(false).split(File.pathSeparator);
+				final List<File> files = new ArrayList<File>();
+				for (int i = 1; i < paths.length; i++) {
+					files.add(new File(paths[i]));
+				}
+				DeclaredDependencies.setResolved(declared, files);
+			}
+			success = true;
+			return project;
 		}
-		if (!file.renameTo(result)) {
-			throw new IOException("Could not move " + file +
-				" into the correct location");
+		finally {
+			if (!success) workspace.release(directory);
 		}
-
-		// write POM
-		final String artifactId =
-			mainClass.substring(mainClass.lastIndexOf('.') + 1);
-		return fakePOM(env, directory, artifactId, mainClass, true);
 	}
 
 	/**
@@ -636,20 +2320,24 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * @param env the associated {@link BuildEnvironment} (to avoid duplicate
 	 *          {@code artifactId}s)
 	 * @param name the project name
+	 * @param suffixes the next numerical suffix to try, by prefix
 	 * @return the generated {@code artifactId}
 	 */
 	private static String fakeArtifactId(final BuildEnvironment env,
-		final String name)
+		final String name, final Map<String, Integer> suffixes)
 	{
 		int dot = name.indexOf('.');
 		final String prefix =
 			dot < 0 ? name : dot == 0 ? "dependency" : name.substring(0, dot);
-		if (!env.containsProject(DEFAULT_GROUP_ID, prefix)) {
+		final Integer next = suffixes.get(prefix);
+		if (next == null && !env.containsProject(DEFAULT_GROUP_ID, prefix)) {
+			suffixes.put(prefix, 1);
 			return prefix;
 		}
-		for (int i = 1;; i++) {
+		for (int i = next == null ? 1 : next;; i++) {
 			final String artifactId = prefix + "-" + i;
 			if (!env.containsProject(DEFAULT_GROUP_ID, artifactId)) {
+				suffixes.put(prefix, i + 1);
 				return artifactId;
 			}
 		}
@@ -670,6 +2358,7 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * @param mainClass the main class, if any
 	 * @param writePOM whether to write the Maven POM as {@code pom.xml} into the
 	 *          specified directory
+	 * @param dependencies the dependencies of the faked POM
 	 * @return the faked POM
 	 * @throws IOException
 	 * @throws ParserConfigurationException
@@ -680,8 +2369,9 @@ public class JavaEngine extends AbstractScriptEngine {
 	 */
 	private static MavenProject fakePOM(final BuildEnvironment env,
 		final File directory, final String artifactId, final String mainClass,
-		boolean writePOM) throws IOException, ParserConfigurationException,
-		SAXException, TransformerConfigurationException, TransformerException,
+		boolean writePOM, final List<Coordinate> dependencies) throws IOException,
+		ParserConfigurationException, SAXException,
+		TransformerConfigurationException, TransformerException,
 		TransformerFactoryConfigurationError
 	{
 		final Document pom =
@@ -711,9 +2401,9 @@ public class JavaEngine extends AbstractScriptEngine {
 			append(pom, manifest, "mainClass", mainClass);
 		}
 
-		Element dependencies = append(pom, project, "dependencies", null);
-		for (Coordinate dependency : getAllDependencies(env)) {
-			Element dep = append(pom, dependencies, "dependency", null);
+		Element dependencyList = append(pom, project, "dependencies", null);
+		for (Coordinate dependency : dependencies) {
+			Element dep = append(pom, dependencyList, "dependency", null);
 			append(pom, dep, "groupId", dependency.getGroupId());
 			append(pom, dep, "artifactId", dependency.getArtifactId());
 			append(pom, dep, "version", dependency.getVersion());
@@ -782,15 +2472,49 @@ public class JavaEngine extends AbstractScriptEngine {
 	private static List<Coordinate>
 		getAllDependencies(final BuildEnvironment env)
 	{
-		final List<Coordinate> result = new ArrayList<Coordinate>();
+		return fakeDependencies(env, scanClassPath());
+	}
+
+	/**
+	 * Discovers all current class path elements.
+	 * 
+	 * @return the {@code .jar} files and class directories
+	 */
+	static List<File> scanClassPath() {
+		final long start = System.nanoTime();
+		final FlightRecorder.Event event = FlightRecorder.CLASS_PATH_SCAN.begin();
 		ClassGraph cg = new ClassGraph();
 		String cp = cg.getClasspath();
 		String[] candidates = cp.split(File.pathSeparator);
+		JavaEngineStats.classPathScanned(System.nanoTime() - start);
+		FlightRecorder.end(event, null, candidates.length, "ok");
 
+		final List<File> files = new ArrayList<File>(candidates.length);
 		for( String candidate : candidates ){
-			File file = new File(candidate);
-			Coordinate c = fakeDependency(env, file);
-			result.add(c);
+			files.add(new File(candidate));
+		}
+		return files;
+	}
+
+	/**
+	 * Fakes Maven POMs in memory for the specified dependencies.
+	 * <p>
+	 * This takes linear time even if many of the files share the same prefix
+	 * (think {@code imglib2-*.jar}): the next suffix to try is remembered per
+	 * prefix instead of probing from {@code -1} every time.
+	 * </p>
+	 * 
+	 * @param env the {@link BuildEnvironment} for storing the faked Maven POMs
+	 * @param files the dependencies
+	 * @return the list of dependencies, as {@link Coordinate}s
+	 */
+	static List<Coordinate> fakeDependencies(final BuildEnvironment env,
+		final List<File> files)
+	{
+		final List<Coordinate> result = new ArrayList<Coordinate>(files.size());
+		final Map<String, Integer> suffixes = new HashMap<String, Integer>();
+		for (final File file : files) {
+			result.add(fakeDependency(env, file, suffixes));
 		}
 		return result;
 	}
@@ -805,12 +2529,13 @@ public class JavaEngine extends AbstractScriptEngine {
 	 * 
 	 * @param env the {@link BuildEnvironment} for storing the faked Maven POM
 	 * @param file the dependency
+	 * @param suffixes the next numerical suffix to try, by prefix
 	 * @return the {@link Coordinate} specifying the dependency
 	 */
 	private static Coordinate fakeDependency(final BuildEnvironment env,
-		final File file)
+		final File file, final Map<String, Integer> suffixes)
 	{
-		final String artifactId = fakeArtifactId(env, file.getName());
+		final String artifactId = fakeArtifactId(env, file.getName(), suffixes);
 		Coordinate dependency =
 			new Coordinate(DEFAULT_GROUP_ID, artifactId, "1.0.0");
 		env.fakePOM(file, dependency);
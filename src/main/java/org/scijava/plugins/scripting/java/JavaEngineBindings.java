@@ -43,77 +43,97 @@ import org.scijava.script.ScriptModule;
 
 /**
  * Pseudo-{@link Bindings} for the {@link JavaEngine}.
+ * <p>
+ * Apart from the keys configuring the engine, such as
+ * {@link ScriptEngine#FILENAME} and the {@link ScriptModule} key, arbitrary
+ * values can be bound; upon evaluation, they are injected into the matching
+ * static fields of the compiled class, or passed as inputs to its
+ * {@link org.scijava.plugin.Parameter} fields if the class is a command.
+ * </p>
+ * <p>
+ * The bindings are thread-safe, as an engine may be used by several threads
+ * at once. Like for {@link java.util.Collections#synchronizedMap}, iterating
+ * over the key set, values or entry set requires synchronizing on the
+ * bindings.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
 public class JavaEngineBindings implements Bindings {
 
-	private Map<String, Object> map = new HashMap<String, Object>();
+	private final Map<String, Object> map = new HashMap<String, Object>();
 
 	@Override
-	public int size() {
+	public synchronized int size() {
 		return map.size();
 	}
 
 	@Override
-	public boolean isEmpty() {
+	public synchronized boolean isEmpty() {
 		return map.isEmpty();
 	}
 
 	@Override
-	public boolean containsValue(Object value) {
+	public synchronized boolean containsValue(Object value) {
 		return map.containsValue(value);
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		map.clear();
 	}
 
 	@Override
-	public Set<String> keySet() {
+	public synchronized Set<String> keySet() {
 		return map.keySet();
 	}
 
 	@Override
-	public Collection<Object> values() {
+	public synchronized Collection<Object> values() {
 		return map.values();
 	}
 
 	@Override
-	public Set<Entry<String, Object>> entrySet() {
+	public synchronized Set<Entry<String, Object>> entrySet() {
 		return map.entrySet();
 	}
 
 	@Override
-	public Object put(String name, Object value) {
-		if (!name.equals(ScriptEngine.FILENAME) && !name.equals("IJ") &&
-				!name.equals(ScriptModule.class.getName())) {
-			throw new UnsupportedOperationException();
-		}
+	public synchronized Object put(String name, Object value) {
+		if (name == null) throw new NullPointerException("name is null");
+		if (name.isEmpty()) throw new IllegalArgumentException("name is empty");
 		return map.put(name, value);
 	}
 
 	@Override
-	public void putAll(Map<? extends String, ? extends Object> toMerge) {
+	public synchronized void putAll(
+		Map<? extends String, ? extends Object> toMerge)
+	{
 		for (final String key : toMerge.keySet()) {
 			put(key, toMerge.get(key));
 		}
 	}
 
 	@Override
-	public boolean containsKey(Object key) {
+	public synchronized boolean containsKey(Object key) {
 		return map.containsKey(key);
 	}
 
 	@Override
-	public Object get(Object key) {
+	public synchronized Object get(Object key) {
 		return map.get(key);
 	}
 
 	@Override
-	public Object remove(Object key) {
+	public synchronized Object remove(Object key) {
 		return map.remove(key);
 	}
 
+	/**
+	 * @return a copy of the bindings, taken atomically
+	 */
+	synchronized Map<String, Object> snapshot() {
+		return new HashMap<String, Object>(map);
+	}
+
 }
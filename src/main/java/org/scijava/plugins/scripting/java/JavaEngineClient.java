@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Runs Java scripts in a {@link JavaEngineDaemon}.
+ * <p>
+ * This class is deliberately self-contained, so that starting a client only
+ * loads a handful of JDK classes: the script is compiled and run in the
+ * daemon, whose output is streamed back.
+ * </p>
+ */
+public class JavaEngineClient {
+
+	private JavaEngineClient() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Runs a script in the daemon announced by the given port file.
+	 * 
+	 * @param portFile the file written by the daemon
+	 * @param script the {@code .java} file (or {@code pom.xml}) to run
+	 * @param args the arguments to pass to the script's {@code main} method
+	 * @param out the destination of the script's standard output
+	 * @param err the destination of the script's standard error
+	 * @return the exit status of the script
+	 * @throws IOException if the daemon could not be reached
+	 */
+	public static int run(final File portFile, final File script,
+		final String[] args, final OutputStream out, final OutputStream err)
+		throws IOException
+	{
+		final String[] announcement = readPortFile(portFile);
+		final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer
+			.parseInt(announcement[0]));
+		try {
+			socket.setTcpNoDelay(true);
+			final DataOutputStream request = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream()));
+			request.writeUTF(announcement[1]);
+			request.writeUTF(script.getAbsolutePath());
+			request.writeInt(args.length);
+			for (final String arg : args) {
+				request.writeUTF(arg);
+			}
+			request.flush();
+
+			final DataInputStream response = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream()));
+			byte[] buffer = new byte[8192];
+			for (;;) {
+				final byte type = response.readByte();
+				if (type == JavaEngineDaemon.EXIT) {
+					out.flush();
+					err.flush();
+					return response.readInt();
+				}
+				final int length = response.readInt();
+				if (length > buffer.length) buffer = new byte[length];
+				response.readFully(buffer, 0, length);
+				final OutputStream target = type == JavaEngineDaemon.STDERR ? err : out;
+				target.write(buffer, 0, length);
+				target.flush();
+			}
+		}
+		finally {
+			socket.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static String[] readPortFile(final File portFile)
+		throws IOException
+	{
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(portFile), "UTF-8"));
+		try {
+			final String line = reader.readLine();
+			final String[] result = line == null ? null : line.trim().split(" ");
+			if (result == null || result.length != 2) {
+				throw new IOException("Invalid port file: " + portFile);
+			}
+			return result;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Runs a script in the daemon, exiting with the script's exit status.
+	 * 
+	 * @param args the path of the script, followed by its arguments
+	 */
+	public static void main(final String... args) {
+		if (args.length == 0) {
+			System.err.println("Usage: " + JavaEngineClient.class.getName() +
+				" <script.java> [<argument>...]");
+			System.exit(2);
+		}
+		final String portFileProperty = System.getProperty("scijava.java.daemon");
+		final File portFile = portFileProperty != null ? new File(
+			portFileProperty) : JavaEngineDaemon.getDefaultPortFile();
+		final String[] scriptArgs = new String[args.length - 1];
+		System.arraycopy(args, 1, scriptArgs, 0, scriptArgs.length);
+		int status;
+		try {
+			status = run(portFile, new File(args[0]), scriptArgs, System.out,
+				System.err);
+		}
+		catch (final IOException e) {
+			System.err.println("Could not reach the daemon (" + e.getMessage() +
+				"); start it via " + JavaEngineDaemon.class.getName());
+			status = 2;
+		}
+		System.exit(status);
+	}
+
+}
@@ -0,0 +1,453 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+
+import org.scijava.Context;
+import org.scijava.command.Command;
+import org.scijava.object.ObjectService;
+import org.scijava.run.RunService;
+
+/**
+ * Keeps a warm {@link JavaEngine} running in the background, for
+ * {@link JavaEngineClient}s to run Java scripts without paying for the JVM
+ * startup, the {@link Context} creation and cold caches every time.
+ * <p>
+ * The daemon listens on a loopback port; the port and a random token are
+ * written to a file readable only by the current user, and clients need to
+ * present the token. Each request names a {@code .java} file (or a
+ * {@code pom.xml}) and its arguments; the class is compiled and its
+ * {@code main(String[])} method is called (or, if it is a {@link Command},
+ * it is run via the {@link RunService}). Output written to
+ * {@link System#out} and {@link System#err} in the meantime, as well as the
+ * compiler's messages, is streamed back to the client.
+ * </p>
+ * <p>
+ * Requests are executed one at a time, since {@link System#out} and
+ * {@link System#err} are shared by the whole JVM. Note that scripts calling
+ * {@link System#exit(int)} terminate the daemon.
+ * </p>
+ * <p>
+ * At most {@value #MAX_CONNECTIONS} connections are served at a time; more
+ * are closed right away. Clients have {@value #REQUEST_TIMEOUT} milliseconds
+ * to send their request, and requests with more than {@value #MAX_ARGS}
+ * arguments are rejected.
+ * </p>
+ */
+public class JavaEngineDaemon {
+
+	/** Frame type: a chunk of standard output. */
+	static final byte STDOUT = 'o';
+
+	/** Frame type: a chunk of standard error. */
+	static final byte STDERR = 'e';
+
+	/** Frame type: the exit status; always the last frame. */
+	static final byte EXIT = 'x';
+
+	/** Maximal number of connections served (or waiting to be served). */
+	static final int MAX_CONNECTIONS = 16;
+
+	/** Milliseconds granted to clients for sending their request. */
+	static final int REQUEST_TIMEOUT = 10000;
+
+	/** Maximal number of arguments a request may pass to a script. */
+	static final int MAX_ARGS = 4096;
+
+	private final Context context;
+	private final File portFile;
+	private final Object runLock = new Object();
+
+	/** Runs the accepting thread, plus one thread per connection. */
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(0,
+		MAX_CONNECTIONS + 1, 60, TimeUnit.SECONDS,
+		new SynchronousQueue<Runnable>(), new ThreadFactory()
+		{
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "java-engine-daemon");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	private JavaEngine engine;
+	private ServerSocket server;
+	private String token;
+
+	/**
+	 * @param context the context whose {@link JavaScriptLanguage} to use
+	 * @param portFile the file to which the port and token are written
+	 */
+	public JavaEngineDaemon(final Context context, final File portFile) {
+		this.context = context;
+		this.portFile = portFile;
+	}
+
+	/**
+	 * @return the default location of the port file for the current user
+	 */
+	public static File getDefaultPortFile() {
+		return new File(System.getProperty("java.io.tmpdir"),
+			"scijava-java-daemon-" + System.getProperty("user.name") + ".port");
+	}
+
+	/**
+	 * Starts listening for requests in the background.
+	 * 
+	 * @return the port the daemon listens on
+	 */
+	public synchronized int start() throws IOException {
+		if (server != null) return server.getLocalPort();
+		final ObjectService objectService =
+			context.getService(ObjectService.class);
+		final JavaScriptLanguage java =
+			objectService.getObjects(JavaScriptLanguage.class).get(0);
+		engine = (JavaEngine) java.getScriptEngine();
+
+		final byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		final StringBuilder builder = new StringBuilder();
+		for (final byte b : random) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		token = builder.toString();
+
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		try {
+			writePortFile(server.getLocalPort(), token);
+		}
+		catch (final IOException e) {
+			server.close();
+			server = null;
+			throw e;
+		}
+		final ServerSocket serverSocket = server;
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					accept(serverSocket);
+				}
+			});
+		}
+		catch (final RejectedExecutionException e) {
+			// the daemon was closed before
+			server.close();
+			server = null;
+			portFile.delete();
+			throw new IOException("The daemon was closed", e);
+		}
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Stops listening, and removes the port file.
+	 */
+	public synchronized void close() {
+		if (server == null) return;
+		try {
+			server.close();
+		}
+		catch (final IOException e) {
+			// NB: We are shutting down anyway.
+		}
+		server = null;
+		portFile.delete();
+		executor.shutdown();
+		notifyAll();
+	}
+
+	// -- Helper methods --
+
+	private void writePortFile(final int port, final String secret)
+		throws IOException
+	{
+		final Path parent = portFile.getAbsoluteFile().getParentFile().toPath();
+		// the file must be accessible to the current user only from the start
+		Path privateDirectory = null;
+		Path tmp;
+		try {
+			tmp = Files.createTempFile(parent, portFile.getName(), ".tmp",
+				PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(
+					"rw-------")));
+		}
+		catch (final UnsupportedOperationException e) {
+			// no POSIX permissions (e.g. Windows): use a private directory
+			privateDirectory = Files.createTempDirectory(parent, portFile.getName());
+			final File directory = privateDirectory.toFile();
+			directory.setReadable(false, false);
+			directory.setReadable(true, true);
+			directory.setWritable(false, false);
+			directory.setWritable(true, true);
+			directory.setExecutable(false, false);
+			directory.setExecutable(true, true);
+			tmp = Files.createFile(privateDirectory.resolve("port.tmp"));
+		}
+		try {
+			final Writer writer =
+				new OutputStreamWriter(Files.newOutputStream(tmp), "UTF-8");
+			try {
+				writer.write(port + " " + secret + "\n");
+			}
+			finally {
+				writer.close();
+			}
+			Files.move(tmp, portFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (final IOException e) {
+			Files.deleteIfExists(tmp);
+			throw new IOException("Could not write " + portFile, e);
+		}
+		finally {
+			if (privateDirectory != null) Files.deleteIfExists(privateDirectory);
+		}
+	}
+
+	private void accept(final ServerSocket serverSocket) {
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch (final SocketException e) {
+				break;
+			}
+			catch (final IOException e) {
+				continue;
+			}
+			try {
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						handle(socket);
+					}
+				});
+			}
+			catch (final RejectedExecutionException e) {
+				// too many connections, or the daemon was closed
+				close(socket);
+			}
+		}
+	}
+
+	private void handle(final Socket socket) {
+		try {
+			// do not let clients occupy a connection without sending anything
+			socket.setSoTimeout(REQUEST_TIMEOUT);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream()));
+			final byte[] secret = in.readUTF().getBytes("UTF-8");
+			if (!MessageDigest.isEqual(secret, token.getBytes("UTF-8"))) return;
+			final String path = in.readUTF();
+			final int count = in.readInt();
+			if (count < 0 || count > MAX_ARGS) return;
+			final String[] args = new String[count];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
+			socket.setSoTimeout(0);
+
+			final int status;
+			synchronized (runLock) {
+				status = run(new File(path), args, out);
+			}
+			synchronized (out) {
+				out.writeByte(EXIT);
+				out.writeInt(status);
+				out.flush();
+			}
+		}
+		catch (final IOException e) {
+			// NB: The client went away; nothing to report to.
+		}
+		finally {
+			close(socket);
+		}
+	}
+
+	private static void close(final Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (final IOException e) {
+			// NB: Nothing to do.
+		}
+	}
+
+	/**
+	 * Compiles and runs a script, streaming its output to the client.
+	 * 
+	 * @return the exit status to report to the client
+	 */
+	private int run(final File file, final String[] args,
+		final DataOutputStream out)
+	{
+		final PrintStream stdout = new PrintStream(new Frames(out, STDOUT), true);
+		final PrintStream stderr = new PrintStream(new Frames(out, STDERR), true);
+		final PrintWriter errorWriter = new PrintWriter(stderr, true);
+		final PrintStream oldOut = System.out, oldErr = System.err;
+		final ScriptContext scriptContext = engine.getContext();
+		final Writer oldWriter = scriptContext.getWriter();
+		final Writer oldErrorWriter = scriptContext.getErrorWriter();
+		System.setOut(stdout);
+		System.setErr(stderr);
+		scriptContext.setWriter(new PrintWriter(stdout, true));
+		scriptContext.setErrorWriter(errorWriter);
+		try {
+			engine.put(ScriptEngine.FILENAME, file.getAbsolutePath());
+			final Class<?> clazz = engine.compile((String) null);
+			if (clazz == null) return 1;
+			if (MethodDispatcher.hasMethod(clazz, "main", true, 1)) {
+				engine.invokeFunction("main", (Object) args);
+			}
+			else {
+				context.getService(RunService.class).run(clazz);
+				engine.releaseUnlessCached(clazz);
+			}
+			return 0;
+		}
+		catch (final Throwable t) {
+			t.printStackTrace(errorWriter);
+			return 1;
+		}
+		finally {
+			errorWriter.flush();
+			stdout.flush();
+			System.setOut(oldOut);
+			System.setErr(oldErr);
+			scriptContext.setWriter(oldWriter);
+			scriptContext.setErrorWriter(oldErrorWriter);
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).remove(
+				ScriptEngine.FILENAME);
+		}
+	}
+
+	/** Wraps everything written into frames of the given type. */
+	private static class Frames extends OutputStream {
+
+		private final DataOutputStream out;
+		private final byte type;
+
+		private Frames(final DataOutputStream out, final byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			if (len == 0) return;
+			synchronized (out) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Runs the daemon until the JVM is terminated.
+	 * 
+	 * @param args an optional path of the port file
+	 */
+	public static void main(final String... args) throws Exception {
+		final File portFile =
+			args.length > 0 ? new File(args[0]) : getDefaultPortFile();
+		final Context context = new Context();
+		final JavaEngineDaemon daemon = new JavaEngineDaemon(context, portFile);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+
+			@Override
+			public void run() {
+				daemon.close();
+			}
+		});
+		final int port = daemon.start();
+		System.err.println("Listening on port " + port + " (see " + portFile +
+			")");
+		synchronized (daemon) {
+			while (daemon.server != null) {
+				daemon.wait();
+			}
+		}
+	}
+
+}
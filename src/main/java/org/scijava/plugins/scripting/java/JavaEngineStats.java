@@ -0,0 +1,272 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compile and run statistics of the {@link JavaEngine}s of one
+ * {@link JavaScriptLanguage}, registered as an MBean so that they can be
+ * monitored via JMX.
+ * <p>
+ * Compiled classes and their class loaders are tracked via weak references,
+ * so that a growing number of live ones points to a leak.
+ * </p>
+ */
+public class JavaEngineStats implements JavaEngineStatsMBean {
+
+	/** The number of most recent compile times to keep. */
+	private static final int WINDOW = 1024;
+
+	/** The number of most expensive scripts to report. */
+	private static final int HEAVIEST = 10;
+
+	/** The duration of the last class path scan, in nanoseconds. */
+	private static volatile long lastClassPathScan = -1;
+
+	private final AtomicLong compiles = new AtomicLong();
+	private final AtomicLong failedCompiles = new AtomicLong();
+	private final AtomicLong evals = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final Map<Class<?>, Boolean> classes = Collections.synchronizedMap(
+		new WeakHashMap<Class<?>, Boolean>());
+	private final Map<ClassLoader, Boolean> classLoaders = Collections
+		.synchronizedMap(new WeakHashMap<ClassLoader, Boolean>());
+
+	private final ScriptAccounting accounting = new ScriptAccounting();
+
+	private final long[] compileTimes = new long[WINDOW];
+	private long compileTimeCount, compileTimeTotal;
+
+	// -- JavaEngineStats methods --
+
+	/**
+	 * Records a successful compile.
+	 * 
+	 * @param clazz the compiled class
+	 * @param nanos the time taken, in nanoseconds
+	 */
+	void compiled(final Class<?> clazz, final long nanos) {
+		compiles.incrementAndGet();
+		recordCompileTime(nanos);
+		if (clazz == null) return;
+		classes.put(clazz, Boolean.TRUE);
+		final ClassLoader loader = clazz.getClassLoader();
+		if (loader != null) classLoaders.put(loader, Boolean.TRUE);
+	}
+
+	/**
+	 * Records a failed compile.
+	 * 
+	 * @param nanos the time taken, in nanoseconds
+	 */
+	void compileFailed(final long nanos) {
+		compiles.incrementAndGet();
+		failedCompiles.incrementAndGet();
+		recordCompileTime(nanos);
+	}
+
+	/** Records the evaluation of a script. */
+	void evaluated() {
+		evals.incrementAndGet();
+	}
+
+	/**
+	 * Records a lookup among the compiled classes.
+	 * 
+	 * @param hit whether a compiled class was found
+	 */
+	void cacheLookup(final boolean hit) {
+		(hit ? cacheHits : cacheMisses).incrementAndGet();
+	}
+
+	/**
+	 * Gets the resources used by each script evaluated so far.
+	 * 
+	 * @return the accounting table
+	 */
+	public ScriptAccounting getScriptAccounting() {
+		return accounting;
+	}
+
+	/**
+	 * Records a scan of the class path; as there is only one class path per
+	 * JVM, this statistic is shared by all instances.
+	 * 
+	 * @param nanos the time taken, in nanoseconds
+	 */
+	static void classPathScanned(final long nanos) {
+		lastClassPathScan = nanos;
+	}
+
+	// -- JavaEngineStatsMBean methods --
+
+	@Override
+	public long getCompiles() {
+		return compiles.get();
+	}
+
+	@Override
+	public long getFailedCompiles() {
+		return failedCompiles.get();
+	}
+
+	@Override
+	public long getEvals() {
+		return evals.get();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	@Override
+	public synchronized double getCompileTimeAverage() {
+		if (compileTimeCount == 0) return 0;
+		return millis(compileTimeTotal) / compileTimeCount;
+	}
+
+	@Override
+	public double getCompileTimeMedian() {
+		return getCompileTimePercentile(50);
+	}
+
+	@Override
+	public double getCompileTime90thPercentile() {
+		return getCompileTimePercentile(90);
+	}
+
+	@Override
+	public double getCompileTime99thPercentile() {
+		return getCompileTimePercentile(99);
+	}
+
+	@Override
+	public int getLiveCompiledClasses() {
+		return classes.size();
+	}
+
+	@Override
+	public int getLiveClassLoaders() {
+		return classLoaders.size();
+	}
+
+	@Override
+	public int getTemporaryDirectoriesInUse() {
+		// NB: Reading statistics must not create the workspace.
+		final TemporaryWorkspace workspace =
+			TemporaryWorkspace.getExistingDefault();
+		return workspace == null ? 0 : workspace.getDirectoriesInUse();
+	}
+
+	@Override
+	public double getLastClassPathScanTime() {
+		final long nanos = lastClassPathScan;
+		return nanos < 0 ? -1 : millis(nanos);
+	}
+
+	@Override
+	public String[] getHeaviestScripts() {
+		final List<ScriptUsage> heaviest = accounting.getHeaviest(HEAVIEST);
+		final String[] result = new String[heaviest.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = heaviest.get(i).toString();
+		}
+		return result;
+	}
+
+	@Override
+	public int getRunningCompiles() {
+		return CompileScheduler.getDefault().getRunning();
+	}
+
+	@Override
+	public int getQueuedCompiles() {
+		return CompileScheduler.getDefault().getQueued();
+	}
+
+	@Override
+	public long getRejectedCompiles() {
+		return CompileScheduler.getDefault().getRejected();
+	}
+
+	@Override
+	public double getCompileWaitTimeAverage() {
+		return CompileScheduler.getDefault().getAverageWaitTime();
+	}
+
+	@Override
+	public double getCompileWaitTimeMax() {
+		return CompileScheduler.getDefault().getMaxWaitTime();
+	}
+
+	// -- Helper methods --
+
+	private synchronized void recordCompileTime(final long nanos) {
+		compileTimes[(int) (compileTimeCount % WINDOW)] = nanos;
+		compileTimeCount++;
+		compileTimeTotal += nanos;
+	}
+
+	/**
+	 * Computes a percentile of the most recent compile times (nearest rank).
+	 */
+	private double getCompileTimePercentile(final int percentile) {
+		final long[] sorted;
+		synchronized (this) {
+			final int count = (int) Math.min(compileTimeCount, WINDOW);
+			if (count == 0) return 0;
+			sorted = Arrays.copyOf(compileTimes, count);
+		}
+		Arrays.sort(sorted);
+		final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return millis(sorted[Math.max(rank, 1) - 1]);
+	}
+
+	private static double millis(final long nanos) {
+		return nanos / 1e6;
+	}
+
+}
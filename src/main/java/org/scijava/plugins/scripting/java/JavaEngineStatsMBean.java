@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+/**
+ * Management interface of {@link JavaEngineStats}.
+ * <p>
+ * Times are reported in milliseconds; the compile time percentiles are taken
+ * over the most recent compiles.
+ * </p>
+ */
+public interface JavaEngineStatsMBean {
+
+	/** @return the number of compiles, excluding cache hits */
+	long getCompiles();
+
+	/** @return the number of failed compiles */
+	long getFailedCompiles();
+
+	/** @return the number of scripts evaluated */
+	long getEvals();
+
+	/** @return the number of scripts whose compiled class was reused */
+	long getCacheHits();
+
+	/** @return the number of scripts not found among the compiled classes */
+	long getCacheMisses();
+
+	/** @return the average compile time */
+	double getCompileTimeAverage();
+
+	/** @return the median compile time */
+	double getCompileTimeMedian();
+
+	/** @return the 90th percentile of the compile time */
+	double getCompileTime90thPercentile();
+
+	/** @return the 99th percentile of the compile time */
+	double getCompileTime99thPercentile();
+
+	/** @return the number of compiled classes not yet garbage collected */
+	int getLiveCompiledClasses();
+
+	/** @return the number of class loaders not yet garbage collected */
+	int getLiveClassLoaders();
+
+	/** @return the number of temporary project directories in use */
+	int getTemporaryDirectoriesInUse();
+
+	/** @return how long the last scan of the class path took */
+	double getLastClassPathScanTime();
+
+	/** @return the most expensive scripts, most expensive first */
+	String[] getHeaviestScripts();
+
+	/** @return the number of compiles running in this JVM */
+	int getRunningCompiles();
+
+	/** @return the number of compiles waiting to be admitted in this JVM */
+	int getQueuedCompiles();
+
+	/** @return the number of compiles rejected because too many were waiting */
+	long getRejectedCompiles();
+
+	/** @return the average time compiles waited to be admitted */
+	double getCompileWaitTimeAverage();
+
+	/** @return the longest time a compile waited to be admitted */
+	double getCompileWaitTimeMax();
+
+}
@@ -31,11 +31,18 @@
 
 package org.scijava.plugins.scripting.java;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.script.ScriptEngine;
 
+import org.scijava.event.ContextDisposingEvent;
+import org.scijava.event.EventHandler;
 import org.scijava.plugin.Plugin;
 import org.scijava.script.AbstractScriptLanguage;
 import org.scijava.script.ScriptLanguage;
@@ -47,12 +54,120 @@ import org.scijava.script.ScriptLanguage;
  * href="http://imagej.net/Script_Editor">ImageJ script editor</a>, this
  * "script" language implementation compiles and runs Java classes.
  * </p>
+ * <p>
+ * The engines' statistics are registered as an MBean named
+ * {@code org.scijava.plugins.scripting.java:type=JavaEngine,context=<id>}
+ * as long as the context lives.
+ * </p>
+ * <p>
+ * Setting the system property {@value #WARM_UP} to {@code true} warms up the
+ * engine in the background when a context is created (via the
+ * {@link JavaWarmUpService}), so that the first compile does not pay for
+ * loading and initializing the compiler infrastructure; setting it to
+ * {@code compile} additionally compiles trivial scripts end to end. See
+ * {@link #warmUp(boolean)}.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
 @Plugin(type = ScriptLanguage.class, name = "Java")
 public class JavaScriptLanguage extends AbstractScriptLanguage {
 
+	/** The system property to warm up the engine with each context. */
+	public static final String WARM_UP = "scijava.java.warmUp";
+
+	private CompilerProfile profile = CompilerProfile.DEFAULT;
+
+	private JavaEngineStats stats;
+	private ObjectName statsName;
+
+	// -- JavaScriptLanguage methods --
+
+	/**
+	 * Gets the compiler profile of newly created engines.
+	 * 
+	 * @return the compiler profile
+	 */
+	public CompilerProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Sets the compiler profile of newly created engines.
+	 * 
+	 * @param profile the compiler profile
+	 * @see JavaEngine#setProfile(CompilerProfile)
+	 */
+	public void setProfile(final CompilerProfile profile) {
+		if (profile == null) throw new NullPointerException("profile");
+		this.profile = profile;
+	}
+
+	/**
+	 * Gets the statistics shared by the engines of this language, registering
+	 * them with the platform MBean server upon first use.
+	 * 
+	 * @return the statistics
+	 */
+	public synchronized JavaEngineStats getStats() {
+		if (stats != null) return stats;
+		stats = new JavaEngineStats();
+		try {
+			final ObjectName name = new ObjectName(
+				"org.scijava.plugins.scripting.java:type=JavaEngine,context=" +
+					Integer.toHexString(System.identityHashCode(getContext())));
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(name)) {
+				server.registerMBean(stats, name);
+				statsName = name;
+			}
+		}
+		catch (final JMException e) {
+			// NB: The statistics are still available via this method.
+		}
+		catch (final SecurityException e) {
+			// NB: The statistics are still available via this method.
+		}
+		return stats;
+	}
+
+	/**
+	 * Warms up the engine on a low-priority background thread.
+	 * <p>
+	 * This loads ClassGraph and scans the class path, and initializes the
+	 * temporary workspace, MiniMaven and the XML parsers, i.e. what the first
+	 * compile would do otherwise. Optionally, trivial scripts are compiled end
+	 * to end, by an engine injected with this language's context and using
+	 * the compiler profile set by the time the compiles start, to get
+	 * {@code javac} compiled by the JIT, too; these compiles have
+	 * {@link CompileScheduler.Priority#BATCH batch} priority and are not
+	 * counted in this language's statistics. Each step is done at most once
+	 * per JVM.
+	 * </p>
+	 * 
+	 * @param compile whether to compile trivial scripts, too
+	 * @return the pending warm-up, failing if a step failed
+	 */
+	public Future<Void> warmUp(final boolean compile) {
+		return WarmUp.start(compile, this);
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected synchronized void onEvent(
+		@SuppressWarnings("unused") final ContextDisposingEvent evt)
+	{
+		if (statsName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsName);
+		}
+		catch (final JMException e) {
+			// NB: Already gone.
+		}
+		statsName = null;
+	}
+
 	// -- ScriptLanguage methods --
 
 	@Override
@@ -86,6 +201,8 @@ public class JavaScriptLanguage extends AbstractScriptLanguage {
 	public ScriptEngine getScriptEngine() {
 		final JavaEngine engine = new JavaEngine();
 		getContext().inject(engine);
+		engine.setProfile(profile);
+		engine.setStats(getStats());
 		return engine;
 	}
 
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.concurrent.Future;
+
+import org.scijava.Priority;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.script.ScriptLanguage;
+import org.scijava.script.ScriptService;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Warms up the {@link JavaEngine} in the background when a context is created
+ * with the system property {@value JavaScriptLanguage#WARM_UP} set.
+ * <p>
+ * Services are initialized once the context has been injected, hence the
+ * warm-up compiles have the services they need, and they start only after
+ * the other services are up.
+ * </p>
+ * 
+ * @see JavaScriptLanguage#warmUp(boolean)
+ */
+@Plugin(type = Service.class, priority = Priority.VERY_LOW)
+public class JavaWarmUpService extends AbstractService {
+
+	@Parameter(required = false)
+	private ScriptService scriptService;
+
+	private Future<Void> warmUp;
+
+	/**
+	 * @return the pending warm-up, or null if none was requested
+	 */
+	public Future<Void> getWarmUp() {
+		return warmUp;
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		final String mode = System.getProperty(JavaScriptLanguage.WARM_UP);
+		if (mode == null || mode.equalsIgnoreCase("false")) return;
+		if (scriptService == null) return;
+		for (final ScriptLanguage language : scriptService.getLanguages()) {
+			if (language instanceof JavaScriptLanguage) {
+				warmUp = ((JavaScriptLanguage) language).warmUp(mode
+					.equalsIgnoreCase("compile"));
+				return;
+			}
+		}
+	}
+
+}
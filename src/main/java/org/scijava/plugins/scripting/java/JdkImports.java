@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Tells from a script's imports whether it needs anything but the JDK.
+ * <p>
+ * This is merely a quick heuristic to decide whether to try compiling a
+ * script against the JDK alone: classes referenced via their fully-qualified
+ * names are not detected, but will make such a compile attempt fail.
+ * </p>
+ */
+class JdkImports {
+
+	private static final String[] JDK_PACKAGES = { "java.", "javax." };
+
+	private JdkImports() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Scans the header of a script, up to its first type declaration.
+	 * 
+	 * @param script the source code
+	 * @return whether the script only imports JDK classes, and does not declare
+	 *         any dependencies
+	 */
+	static boolean isJdkOnly(final String script) {
+		final BufferedReader reader = new BufferedReader(new StringReader(script));
+		try {
+			boolean inComment = false;
+			for (;;) {
+				final String line = reader.readLine();
+				if (line == null) return true;
+				String trimmed = line.trim();
+				if (inComment) {
+					final int end = trimmed.indexOf("*/");
+					if (end < 0) continue;
+					trimmed = trimmed.substring(end + 2).trim();
+					inComment = false;
+				}
+				if (trimmed.startsWith("/*")) {
+					inComment = trimmed.indexOf("*/", 2) < 0;
+					continue;
+				}
+				if (trimmed.startsWith("//DEPS")) return false;
+				if (trimmed.isEmpty() || trimmed.startsWith("//") || trimmed
+					.startsWith("package "))
+				{
+					continue;
+				}
+				if (!trimmed.startsWith("import ")) return true;
+				String imported = trimmed.substring(7).trim();
+				if (imported.startsWith("static ")) {
+					imported = imported.substring(7).trim();
+				}
+				if (!isJdkPackage(imported)) return false;
+			}
+		}
+		catch (final IOException e) {
+			// NB: Cannot happen when reading from a string.
+			return false;
+		}
+	}
+
+	private static boolean isJdkPackage(final String name) {
+		for (final String prefix : JDK_PACKAGES) {
+			if (name.startsWith(prefix)) return true;
+		}
+		return false;
+	}
+
+}
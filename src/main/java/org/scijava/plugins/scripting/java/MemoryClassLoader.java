@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads classes whose byte code is held in memory.
+ * <p>
+ * The other files of the build output, such as the plugin index written by
+ * SciJava's annotation processor to {@code META-INF/json/}, or
+ * {@code META-INF/services/} entries, are held in memory, too, and served as
+ * resources.
+ * </p>
+ */
+class MemoryClassLoader extends ClassLoader {
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final Map<String, byte[]> classes;
+	private final Map<String, byte[]> resources;
+	private final URLStreamHandler handler = new URLStreamHandler() {
+
+		@Override
+		protected URLConnection openConnection(final URL url) throws IOException {
+			final byte[] bytes = getResourceBytes(url.getPath().substring(1));
+			if (bytes == null) throw new IOException("Not found: " + url);
+			return new URLConnection(url) {
+
+				@Override
+				public void connect() {
+					connected = true;
+				}
+
+				@Override
+				public int getContentLength() {
+					return bytes.length;
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return new ByteArrayInputStream(bytes);
+				}
+			};
+		}
+	};
+
+	/**
+	 * @param classes the byte code, by binary class name
+	 * @param parent the class loader providing the dependencies
+	 */
+	MemoryClassLoader(final Map<String, byte[]> classes,
+		final ClassLoader parent)
+	{
+		this(classes, Collections.<String, byte[]> emptyMap(), parent);
+	}
+
+	/**
+	 * @param classes the byte code, by binary class name
+	 * @param resources the other files, by path (e.g.
+	 *          {@code META-INF/services/java.sql.Driver})
+	 * @param parent the class loader providing the dependencies
+	 */
+	MemoryClassLoader(final Map<String, byte[]> classes,
+		final Map<String, byte[]> resources, final ClassLoader parent)
+	{
+		super(parent);
+		this.classes = classes;
+		this.resources = resources;
+	}
+
+	/**
+	 * @return the names of the classes defined by this loader
+	 */
+	Set<String> getClassNames() {
+		return Collections.unmodifiableSet(classes.keySet());
+	}
+
+	/**
+	 * @param name the binary name of a class defined by this loader
+	 * @return the byte code of the class, or null
+	 */
+	byte[] getBytes(final String name) {
+		return classes.get(name);
+	}
+
+	@Override
+	protected Class<?> findClass(final String name)
+		throws ClassNotFoundException
+	{
+		final byte[] bytes = classes.get(name);
+		if (bytes == null) throw new ClassNotFoundException(name);
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+
+	@Override
+	protected URL findResource(final String name) {
+		if (getResourceBytes(name) == null) return null;
+		try {
+			return new URL("memory", null, -1, "/" + name, handler);
+		}
+		catch (final MalformedURLException e) {
+			return null;
+		}
+	}
+
+	@Override
+	protected Enumeration<URL> findResources(final String name) {
+		final URL url = findResource(name);
+		if (url == null) return Collections.<URL> emptyEnumeration();
+		return Collections.enumeration(Collections.singleton(url));
+	}
+
+	@Override
+	public InputStream getResourceAsStream(final String name) {
+		// NB: Classes defined by this loader shadow those of its parents.
+		if (name.endsWith(".class")) {
+			final byte[] bytes = getResourceBytes(name);
+			if (bytes != null) return new ByteArrayInputStream(bytes);
+		}
+		return super.getResourceAsStream(name);
+	}
+
+	// -- Helper methods --
+
+	private byte[] getResourceBytes(final String name) {
+		if (name.endsWith(".class")) {
+			final byte[] bytes = classes.get(name.substring(0, name.length() - 6)
+				.replace('/', '.'));
+			if (bytes != null) return bytes;
+		}
+		return resources.get(name);
+	}
+
+}
@@ -0,0 +1,332 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dispatches calls to methods of compiled script classes.
+ * <p>
+ * The methods of a class are resolved into {@link MethodHandle}s the first
+ * time a method of a given name is called; subsequent calls only need to pick
+ * the applicable handle from a small array, skipping the reflective lookup
+ * and access checks. Spreading the arguments and boxing the return value
+ * still cost more than a direct invocation. The handles are stored in a
+ * {@link ClassValue}, so they do not prevent the script classes from being
+ * unloaded.
+ * </p>
+ * <p>
+ * Of several applicable overloads, the most specific one is called, judging
+ * by the parameter types (primitive types count as their wrappers). If no
+ * single overload is the most specific, the call is ambiguous and fails.
+ * </p>
+ */
+class MethodDispatcher {
+
+	private static final ClassValue<ConcurrentMap<String, Target[]>> TARGETS =
+		new ClassValue<ConcurrentMap<String, Target[]>>()
+		{
+
+			@Override
+			protected ConcurrentMap<String, Target[]> computeValue(
+				final Class<?> type)
+			{
+				return new ConcurrentHashMap<String, Target[]>();
+			}
+		};
+
+	private MethodDispatcher() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Calls a static method of the specified class.
+	 * 
+	 * @param clazz the class declaring the method
+	 * @param name the name of the method
+	 * @param args the arguments to pass
+	 * @return the return value of the method, or null if it is {@code void}
+	 * @throws NoSuchMethodException if no applicable method was found, or if
+	 *           the call is ambiguous
+	 * @throws Throwable whatever the called method throws
+	 */
+	static Object invokeStatic(final Class<?> clazz, final String name,
+		final Object... args) throws Throwable
+	{
+		final Object[] arguments = args == null ? new Object[0] : args;
+		final Target target = find(clazz, name, true, arguments);
+		return (Object) target.handle.invokeExact(arguments);
+	}
+
+	/**
+	 * Calls an instance method on the specified object.
+	 * 
+	 * @param receiver the object whose method to call
+	 * @param name the name of the method
+	 * @param args the arguments to pass
+	 * @return the return value of the method, or null if it is {@code void}
+	 * @throws NoSuchMethodException if no applicable method was found, or if
+	 *           the call is ambiguous
+	 * @throws Throwable whatever the called method throws
+	 */
+	static Object invokeVirtual(final Object receiver, final String name,
+		final Object... args) throws Throwable
+	{
+		final Object[] arguments = args == null ? new Object[0] : args;
+		final Target target =
+			find(receiver.getClass(), name, false, arguments);
+		return (Object) target.handle.invokeExact(receiver, arguments);
+	}
+
+	/**
+	 * Determines whether the specified class has a method of the given name and
+	 * arity.
+	 * 
+	 * @param clazz the class to inspect
+	 * @param name the name of the method
+	 * @param isStatic whether to look for a static or an instance method
+	 * @param arity the number of parameters
+	 * @return whether such a method exists
+	 */
+	static boolean hasMethod(final Class<?> clazz, final String name,
+		final boolean isStatic, final int arity)
+	{
+		for (final Target target : targets(clazz, name)) {
+			if (target.isStatic == isStatic && target.parameterTypes.length == arity)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Target find(final Class<?> clazz, final String name,
+		final boolean isStatic, final Object[] args) throws NoSuchMethodException
+	{
+		Target first = null;
+		List<Target> applicable = null;
+		for (final Target target : targets(clazz, name)) {
+			if (target.isStatic != isStatic || !target.accepts(args)) continue;
+			if (first == null) first = target;
+			else {
+				if (applicable == null) {
+					applicable = new ArrayList<Target>();
+					applicable.add(first);
+				}
+				applicable.add(target);
+			}
+		}
+		if (first == null) {
+			throw new NoSuchMethodException((isStatic ? "static " : "") +
+				clazz.getName() + "." + name + " accepting " + args.length +
+				" argument(s)");
+		}
+		if (applicable == null) return first;
+		return mostSpecific(applicable);
+	}
+
+	/**
+	 * Picks the overload whose parameter types are at least as specific as
+	 * those of all other applicable overloads.
+	 */
+	private static Target mostSpecific(final List<Target> applicable)
+		throws NoSuchMethodException
+	{
+		Target best = null;
+		for (final Target candidate : applicable) {
+			boolean isBest = true;
+			for (final Target other : applicable) {
+				if (other != candidate && !candidate.isMoreSpecificThan(other)) {
+					isBest = false;
+					break;
+				}
+			}
+			if (!isBest) continue;
+			// NB: Both are as specific as any other, e.g. int and Integer.
+			if (best != null) throw ambiguous(applicable);
+			best = candidate;
+		}
+		if (best == null) throw ambiguous(applicable);
+		return best;
+	}
+
+	private static NoSuchMethodException ambiguous(
+		final List<Target> applicable)
+	{
+		final StringBuilder builder = new StringBuilder("Ambiguous call of");
+		for (final Target target : applicable) {
+			builder.append(' ').append(target.method).append(';');
+		}
+		builder.setLength(builder.length() - 1);
+		return new NoSuchMethodException(builder.toString());
+	}
+
+	private static Target[] targets(final Class<?> clazz, final String name) {
+		final ConcurrentMap<String, Target[]> map = TARGETS.get(clazz);
+		Target[] targets = map.get(name);
+		if (targets == null) {
+			targets = resolve(clazz, name);
+			final Target[] previous = map.putIfAbsent(name, targets);
+			if (previous != null) targets = previous;
+		}
+		return targets;
+	}
+
+	/**
+	 * Resolves all methods of the given name into {@link MethodHandle}s.
+	 * <p>
+	 * Public methods (including inherited ones) are considered as well as all
+	 * methods declared by the class itself, regardless of their visibility.
+	 * Access checks are suppressed only for methods of classes defined by the
+	 * same class loader as the class, i.e. not for JDK or library classes.
+	 * </p>
+	 */
+	private static Target[] resolve(final Class<?> clazz, final String name) {
+		final Map<String, Method> methods = new LinkedHashMap<String, Method>();
+		for (final Method method : clazz.getDeclaredMethods()) {
+			if (method.getName().equals(name) && !method.isBridge()) {
+				methods.put(signature(method), method);
+			}
+		}
+		for (final Method method : clazz.getMethods()) {
+			if (method.getName().equals(name) && !method.isBridge()) {
+				final String signature = signature(method);
+				if (!methods.containsKey(signature)) methods.put(signature, method);
+			}
+		}
+
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final ClassLoader loader = clazz.getClassLoader();
+		final List<Target> result = new ArrayList<Target>();
+		for (final Method method : methods.values()) {
+			try {
+				if (!method.isAccessible() && loader != null && method
+					.getDeclaringClass().getClassLoader() == loader)
+				{
+					method.setAccessible(true);
+				}
+				result.add(new Target(method, lookup.unreflect(method)));
+			}
+			catch (final IllegalAccessException e) {
+				// NB: Skip inaccessible methods.
+			}
+			catch (final SecurityException e) {
+				// NB: Skip inaccessible methods.
+			}
+		}
+		return result.toArray(new Target[result.size()]);
+	}
+
+	private static String signature(final Method method) {
+		final StringBuilder builder = new StringBuilder();
+		for (final Class<?> type : method.getParameterTypes()) {
+			builder.append(type.getName()).append(';');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * A resolved method, adapted to take its arguments as an {@code Object[]}
+	 * and to return an {@link Object}.
+	 */
+	private static class Target {
+
+		private final Method method;
+		private final boolean isStatic;
+		private final Class<?>[] parameterTypes;
+		private final MethodHandle handle;
+
+		private Target(final Method method, final MethodHandle handle) {
+			this.method = method;
+			isStatic = Modifier.isStatic(method.getModifiers());
+			parameterTypes = method.getParameterTypes();
+			final int arity = parameterTypes.length;
+			final MethodType type =
+				MethodType.genericMethodType(isStatic ? arity : arity + 1);
+			this.handle = handle.asFixedArity().asType(type).asSpreader(
+				Object[].class, arity);
+		}
+
+		private boolean accepts(final Object[] args) {
+			if (args.length != parameterTypes.length) return false;
+			for (int i = 0; i < args.length; i++) {
+				final Class<?> type = parameterTypes[i];
+				if (args[i] == null) {
+					if (type.isPrimitive()) return false;
+				}
+				else if (!wrap(type).isInstance(args[i])) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Determines whether each parameter type is the same as, or a subtype
+		 * of, the other method's, with primitive types counting as their
+		 * wrappers.
+		 */
+		private boolean isMoreSpecificThan(final Target other) {
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (!wrap(other.parameterTypes[i]).isAssignableFrom(wrap(
+					parameterTypes[i])))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	static Class<?> wrap(final Class<?> type) {
+		if (!type.isPrimitive()) return type;
+		if (type == Integer.TYPE) return Integer.class;
+		if (type == Long.TYPE) return Long.class;
+		if (type == Double.TYPE) return Double.class;
+		if (type == Float.TYPE) return Float.class;
+		if (type == Boolean.TYPE) return Boolean.class;
+		if (type == Character.TYPE) return Character.class;
+		if (type == Byte.TYPE) return Byte.class;
+		if (type == Short.TYPE) return Short.class;
+		return Void.class;
+	}
+
+}
@@ -0,0 +1,370 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.scijava.minimaven.BuildEnvironment;
+import org.scijava.minimaven.MavenProject;
+import org.xml.sax.SAXException;
+
+/**
+ * Caches parsed Maven projects, together with their {@link BuildEnvironment}.
+ * <p>
+ * Parsing a project's POM entails parsing its parents' POMs and the POMs of
+ * all its dependencies from the local Maven repository. Since the
+ * {@link BuildEnvironment} keeps all of those, reusing it for repeated builds
+ * of the same project skips all of that XML parsing and repository walking.
+ * An entry is discarded as soon as one of the project's own POMs (including
+ * those of its parents, of nested modules and of dependencies built from
+ * source) is modified, or as soon as a {@code SNAPSHOT} dependency is
+ * installed anew into the local repository.
+ * </p>
+ * <p>
+ * MiniMaven memoizes whether a project is up-to-date; that state is reset
+ * before each reuse, so that modified sources are still compiled. As MiniMaven
+ * offers no API for that, the reset relies on the private fields of the
+ * MiniMaven version pinned in the POM; should they not be accessible, projects
+ * are simply not cached. Dependencies are resolved once, when a project is
+ * parsed, and never while holding an entry's lock.
+ * </p>
+ */
+class ProjectCache {
+
+	/** The maximal number of projects to keep. */
+	private static final int MAX_PROJECTS = 16;
+
+	private static final Map<File, CachedProject> ENTRIES = Collections
+		.synchronizedMap(new LinkedHashMap<File, CachedProject>(16, 0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<File, CachedProject> eldest)
+			{
+				return size() > MAX_PROJECTS;
+			}
+		});
+
+	private static final Field UP_TO_DATE, JAR_UP_TO_DATE, BUILT;
+	private static final Object UNKNOWN;
+
+	static {
+		Field upToDate = null, jarUpToDate = null, built = null;
+		Object unknown = null;
+		try {
+			upToDate = MavenProject.class.getDeclaredField("upToDate");
+			jarUpToDate = MavenProject.class.getDeclaredField("jarUpToDate");
+			built = MavenProject.class.getDeclaredField("built");
+			upToDate.setAccessible(true);
+			jarUpToDate.setAccessible(true);
+			built.setAccessible(true);
+			for (final Object constant : upToDate.getType().getEnumConstants()) {
+				if ("UNKNOWN".equals(constant.toString())) unknown = constant;
+			}
+		}
+		catch (final Exception e) {
+			// NB: Caching is disabled.
+		}
+		if (unknown == null) upToDate = jarUpToDate = built = null;
+		UP_TO_DATE = upToDate;
+		JAR_UP_TO_DATE = jarUpToDate;
+		BUILT = built;
+		UNKNOWN = unknown;
+	}
+
+	private ProjectCache() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * @return whether projects are cached, i.e. whether MiniMaven's memoized
+	 *         state can be reset
+	 */
+	static boolean isEnabled() {
+		return UNKNOWN != null;
+	}
+
+	/**
+	 * Obtains the parsed project for a POM, for exclusive use until
+	 * {@link CachedProject#release()} is called.
+	 * 
+	 * @param pom the {@code pom.xml} file
+	 * @param err where the build output should go, or null
+	 * @param verbose whether to build verbosely
+	 * @param debug whether to output debug information
+	 * @return the cache entry holding the project
+	 */
+	static CachedProject acquire(final File pom, final PrintStream err,
+		final boolean verbose, final boolean debug) throws IOException,
+		ParserConfigurationException, SAXException
+	{
+		final File key = pom.getCanonicalFile();
+		if (UNKNOWN == null) {
+			final CachedProject entry = new CachedProject(key, verbose, debug);
+			entry.prepare(err, verbose, debug);
+			return entry;
+		}
+
+		final CachedProject cached = ENTRIES.get(key);
+		if (cached != null) {
+			cached.lock.lock();
+			boolean reuse = false;
+			try {
+				reuse = cached.isCurrent() && cached.prepare(err, verbose, debug);
+			}
+			finally {
+				if (!reuse) cached.lock.unlock();
+			}
+			if (reuse) return cached;
+			ENTRIES.remove(key);
+		}
+
+		final CachedProject entry = new CachedProject(key, verbose, debug);
+		entry.lock.lock();
+		entry.prepare(err, verbose, debug);
+		ENTRIES.put(key, entry);
+		return entry;
+	}
+
+	/** A parsed project with its build environment. */
+	static class CachedProject {
+
+		private final Redirect output = new Redirect();
+		private final BuildEnvironment env;
+		private final MavenProject project;
+		private final List<MavenProject> localProjects;
+		private final Map<File, Long> stamps = new LinkedHashMap<File, Long>();
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private CachedProject(final File pom, final boolean verbose,
+			final boolean debug) throws IOException, ParserConfigurationException,
+			SAXException
+		{
+			env = new SynchronizedBuildEnvironment(new PrintStream(output, true),
+				verbose, debug);
+			project = env.parse(pom, null);
+			localProjects = getLocalProjects();
+
+			// remember the files whose modification invalidates this entry
+			for (final MavenProject p : localProjects) {
+				for (MavenProject q = p; q != null; q = q.getParent()) {
+					final File file = new File(q.getDirectory(), "pom.xml");
+					if (file.exists()) stamps.put(file, file.lastModified());
+				}
+			}
+			for (final MavenProject dependency : project.getDependencies()) {
+				final String version = dependency.getVersion();
+				if (dependency.getBuildFromSource() || version == null ||
+					!version.endsWith("-SNAPSHOT"))
+				{
+					continue;
+				}
+				// NB: Record missing files, too, in case they get installed later.
+				final File jar = dependency.getTarget();
+				if (jar != null) stamps.put(jar, jar.lastModified());
+				final File installed = new File(dependency.getDirectory(), dependency
+					.getArtifactId() + "-" + version + ".pom");
+				stamps.put(installed, installed.lastModified());
+			}
+		}
+
+		/**
+		 * @return the parsed project
+		 */
+		MavenProject getProject() {
+			return project;
+		}
+
+		/**
+		 * @return the build environment holding the project
+		 */
+		BuildEnvironment getEnvironment() {
+			return env;
+		}
+
+		/**
+		 * Diverts the build output of the current thread, e.g. to keep the output
+		 * of modules built in parallel apart.
+		 * 
+		 * @param buffer where to write the output, or null to stop diverting
+		 */
+		void capture(final ByteArrayOutputStream buffer) {
+			if (buffer == null) output.capture.remove();
+			else output.capture.set(buffer);
+		}
+
+		/**
+		 * Hands back the entry after use.
+		 */
+		void release() {
+			output.target = null;
+			if (lock.isHeldByCurrentThread()) lock.unlock();
+		}
+
+		private boolean isCurrent() {
+			for (final Map.Entry<File, Long> entry : stamps.entrySet()) {
+				if (entry.getKey().lastModified() != entry.getValue()) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Readies the entry for a build.
+		 * 
+		 * @return false if the memoized state of the project could not be reset
+		 */
+		private boolean prepare(final PrintStream err, final boolean verbose,
+			final boolean debug)
+		{
+			output.target = err;
+			env.setVerbose(verbose);
+			env.setDebug(debug);
+			if (UNKNOWN == null) return true;
+			try {
+				for (final MavenProject p : localProjects) {
+					UP_TO_DATE.set(p, UNKNOWN);
+					JAR_UP_TO_DATE.set(p, UNKNOWN);
+					BUILT.setBoolean(p, false);
+				}
+				return true;
+			}
+			catch (final IllegalAccessException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * @return the project plus its (nested) modules and dependencies built
+		 *         from source
+		 */
+		private List<MavenProject> getLocalProjects() throws IOException,
+			ParserConfigurationException, SAXException
+		{
+			final List<MavenProject> result = new ArrayList<MavenProject>();
+			addWithModules(project, result);
+			for (final MavenProject dependency : project.getDependencies()) {
+				if (dependency.getBuildFromSource()) {
+					addWithModules(dependency, result);
+				}
+			}
+			return result;
+		}
+
+		private static void addWithModules(final MavenProject project,
+			final List<MavenProject> result)
+		{
+			if (result.contains(project)) return;
+			result.add(project);
+			final MavenProject[] children = project.getChildren();
+			if (children == null) return;
+			for (final MavenProject child : children) {
+				addWithModules(child, result);
+			}
+		}
+	}
+
+	/**
+	 * A build environment whose caches may be looked up by several threads, as
+	 * when the modules of a {@link ReactorBuild} are built in parallel.
+	 * <p>
+	 * MiniMaven only ever gets, puts and removes single entries of these
+	 * caches, without iterating over them, so that synchronizing each lookup
+	 * suffices; at worst, a POM missed by two threads at once is parsed twice.
+	 * </p>
+	 */
+	static class SynchronizedBuildEnvironment extends BuildEnvironment {
+
+		SynchronizedBuildEnvironment(final PrintStream err,
+			final boolean verbose, final boolean debug)
+		{
+			super(err, true, verbose, debug);
+			localPOMCache = Collections.synchronizedMap(localPOMCache);
+			file2pom = Collections.synchronizedMap(file2pom);
+			excludedFromMultiProjects =
+				Collections.synchronizedSet(excludedFromMultiProjects);
+			// NB: multiProjectRoots is a Stack, hence synchronized already.
+		}
+	}
+
+	/** Forwards the build output to the current user of an entry. */
+	private static class Redirect extends OutputStream {
+
+		private volatile PrintStream target;
+		private final ThreadLocal<ByteArrayOutputStream> capture =
+			new ThreadLocal<ByteArrayOutputStream>();
+
+		@Override
+		public void write(final int b) {
+			final ByteArrayOutputStream buffer = capture.get();
+			if (buffer != null) {
+				buffer.write(b);
+				return;
+			}
+			final PrintStream out = target;
+			if (out != null) out.write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			final ByteArrayOutputStream buffer = capture.get();
+			if (buffer != null) {
+				buffer.write(b, off, len);
+				return;
+			}
+			final PrintStream out = target;
+			if (out != null) out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() {
+			if (capture.get() != null) return;
+			final PrintStream out = target;
+			if (out != null) out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.script.ScriptException;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.scijava.minimaven.MavenProject;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds the modules of a multi-module Maven project in parallel.
+ * <p>
+ * MiniMaven builds a project after the projects it depends on, one at a time.
+ * Here, the dependencies between the modules are determined up front, and
+ * each module is built on a fork-join pool as soon as the modules it depends
+ * on are built, so that independent modules are compiled at the same time.
+ * The build output of each module is collected separately and reported in
+ * one go, module by module, once all modules are built; modules depending on
+ * a module that failed to build are skipped.
+ * </p>
+ * <p>
+ * Each module build is admitted by the {@link CompileScheduler} like any other
+ * compile, so that a reactor build cannot run more {@code javac}s than the
+ * scheduler allows; the caller must not hold a slot itself while waiting for
+ * the modules, or they might never be admitted.
+ * </p>
+ * <p>
+ * The modules share one {@link org.scijava.minimaven.BuildEnvironment}, whose
+ * caches are not thread-safe by themselves. All dependencies are resolved
+ * before the first module is built, and the environments handed out by the
+ * {@link ProjectCache} serialize their cache lookups, so that a lookup the
+ * resolution missed cannot corrupt them.
+ * </p>
+ */
+class ReactorBuild {
+
+	private final ProjectCache.CachedProject cached;
+	private final CompileScheduler.Priority priority;
+	private final List<MavenProject> modules = new ArrayList<MavenProject>();
+	private final Map<MavenProject, Set<MavenProject>> dependencies =
+		new LinkedHashMap<MavenProject, Set<MavenProject>>();
+	private final Map<MavenProject, ByteArrayOutputStream> outputs = Collections
+		.synchronizedMap(new LinkedHashMap<MavenProject, ByteArrayOutputStream>());
+
+	/**
+	 * @param cached the parsed multi-module project
+	 * @param priority the priority of the module builds
+	 */
+	private ReactorBuild(final ProjectCache.CachedProject cached,
+		final CompileScheduler.Priority priority)
+	{
+		this.cached = cached;
+		this.priority = priority;
+	}
+
+	/**
+	 * @param project a parsed project
+	 * @return whether the project has modules
+	 */
+	static boolean isReactor(final MavenProject project) {
+		final MavenProject[] children = project.getChildren();
+		return children != null && children.length > 0;
+	}
+
+	/**
+	 * Builds all modules of a multi-module project.
+	 * 
+	 * @param cached the parsed multi-module project
+	 * @param parallelism the maximal number of modules to build at a time
+	 * @param priority the priority with which each module build waits for the
+	 *          {@link CompileScheduler}
+	 * @param err where to report the build output, or null
+	 * @return the project holding the main class: the multi-module project if
+	 *         it names one, else the only module naming one, else the
+	 *         multi-module project
+	 * @throws ScriptException if a module failed to build
+	 */
+	static MavenProject build(final ProjectCache.CachedProject cached,
+		final int parallelism, final CompileScheduler.Priority priority,
+		final PrintStream err) throws IOException, ParserConfigurationException,
+		SAXException, ScriptException
+	{
+		final ReactorBuild reactor = new ReactorBuild(cached, priority);
+		reactor.resolve(cached.getProject());
+		reactor.run(parallelism, err);
+
+		final MavenProject root = cached.getProject();
+		if (root.getMainClass() != null) return root;
+		MavenProject main = null;
+		for (final MavenProject module : reactor.modules) {
+			if (module.getMainClass() == null) continue;
+			if (main != null) return root;
+			main = module;
+		}
+		return main != null ? main : root;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Collects the modules and the dependencies between them.
+	 * <p>
+	 * This also resolves all dependencies once, on the current thread, so that
+	 * the parallel builds find them in the {@link
+	 * org.scijava.minimaven.BuildEnvironment}'s caches, which are not
+	 * thread-safe.
+	 * </p>
+	 */
+	private void resolve(final MavenProject project) throws IOException,
+		ParserConfigurationException, SAXException
+	{
+		final MavenProject[] children = project.getChildren();
+		if (children != null) {
+			for (final MavenProject child : children) {
+				modules.add(child);
+				resolve(child);
+			}
+		}
+		if (project != cached.getProject()) return;
+		for (final MavenProject module : modules) {
+			module.getClassPath(true);
+			final Set<MavenProject> set = new LinkedHashSet<MavenProject>();
+			for (final MavenProject dependency : module.getDependencies()) {
+				if (dependency != module && modules.contains(dependency)) {
+					set.add(dependency);
+				}
+			}
+			dependencies.put(module, set);
+		}
+	}
+
+	private void run(final int parallelism, final PrintStream err)
+		throws ScriptException
+	{
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+		final Map<MavenProject, CompletableFuture<Void>> builds =
+			new LinkedHashMap<MavenProject, CompletableFuture<Void>>();
+		try {
+			for (final MavenProject module : sort()) {
+				final List<CompletableFuture<Void>> before =
+					new ArrayList<CompletableFuture<Void>>();
+				for (final MavenProject dependency : dependencies.get(module)) {
+					before.add(builds.get(dependency));
+				}
+				builds.put(module, CompletableFuture.allOf(before.toArray(
+					new CompletableFuture<?>[before.size()])).thenRunAsync(
+						new Runnable()
+						{
+
+							@Override
+							public void run() {
+								build(module);
+							}
+						}, pool));
+			}
+			try {
+				CompletableFuture.allOf(builds.values().toArray(
+					new CompletableFuture<?>[builds.size()])).join();
+			}
+			catch (final CompletionException e) {
+				// NB: Reported per module below.
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		// report all output in one go, in build order
+		final List<String> failed = new ArrayList<String>();
+		for (final Map.Entry<MavenProject, CompletableFuture<Void>> entry : builds
+			.entrySet())
+		{
+			final MavenProject module = entry.getKey();
+			final ByteArrayOutputStream output = outputs.get(module);
+			Throwable failure = null;
+			try {
+				entry.getValue().join();
+			}
+			catch (final CompletionException e) {
+				failure = e.getCause();
+				failed.add(module.getArtifactId());
+			}
+			if (err == null) continue;
+			if (output == null) {
+				err.println("Skipped " + module.getArtifactId() +
+					": a module it depends on failed to build");
+				continue;
+			}
+			if (output.size() == 0 && failure == null) continue;
+			err.println("Module " + module.getArtifactId() + ":");
+			err.print(output.toString());
+			if (failure != null) failure.printStackTrace(err);
+		}
+		if (err != null) err.flush();
+		if (!failed.isEmpty()) {
+			throw new ScriptException("Failed to build " + failed);
+		}
+	}
+
+	/**
+	 * Sorts the modules so that each module comes after the modules it depends
+	 * on.
+	 */
+	private List<MavenProject> sort() throws ScriptException {
+		final List<MavenProject> result = new ArrayList<MavenProject>();
+		final Set<MavenProject> visiting = new LinkedHashSet<MavenProject>();
+		for (final MavenProject module : modules) {
+			visit(module, visiting, result);
+		}
+		return result;
+	}
+
+	private void visit(final MavenProject module,
+		final Set<MavenProject> visiting, final List<MavenProject> result)
+		throws ScriptException
+	{
+		if (result.contains(module)) return;
+		if (!visiting.add(module)) {
+			throw new ScriptException("Cyclic module dependencies: " + visiting);
+		}
+		for (final MavenProject dependency : dependencies.get(module)) {
+			visit(dependency, visiting, result);
+		}
+		visiting.remove(module);
+		result.add(module);
+	}
+
+	/** Builds a single module, once admitted, capturing its output. */
+	private void build(final MavenProject module) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		outputs.put(module, output);
+		final CompileScheduler scheduler = CompileScheduler.getDefault();
+		try {
+			scheduler.acquire(priority);
+		}
+		catch (final ScriptException e) {
+			throw new CompletionException(e);
+		}
+		cached.capture(output);
+		try {
+			module.build(true);
+		}
+		catch (final RuntimeException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new CompletionException(e);
+		}
+		finally {
+			cached.capture(null);
+			scheduler.release();
+		}
+	}
+
+}
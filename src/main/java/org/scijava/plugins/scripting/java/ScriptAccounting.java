@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accounts the CPU time, allocations and wall-clock time used by each script
+ * evaluated by a {@link JavaEngine}, to find the expensive ones.
+ * <p>
+ * Scripts are identified by their file path (see
+ * {@link javax.script.ScriptEngine#FILENAME}), or by a digest of their source
+ * code. The table is bounded: when it is full, the cheapest script makes room
+ * for a new one, so that heavy hitters stay.
+ * </p>
+ * <p>
+ * Only the thread evaluating a script is accounted for: work the script hands
+ * off to other threads is not charged to it, and neither is the work of
+ * unrelated threads running at the same time. In particular,
+ * {@link org.scijava.command.Command}s run on SciJava's thread pool, so that
+ * only their wall-clock time is meaningful.
+ * </p>
+ */
+public class ScriptAccounting {
+
+	/** The default maximal number of scripts to keep track of. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+	private final Map<String, ScriptUsage> usages =
+		new HashMap<String, ScriptUsage>();
+
+	/** Creates a table of the {@link #DEFAULT_CAPACITY}. */
+	public ScriptAccounting() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximal number of scripts to keep track of
+	 */
+	public ScriptAccounting(final int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Empty table");
+		this.capacity = capacity;
+	}
+
+	// -- ScriptAccounting methods --
+
+	/**
+	 * @param identity the identity of a script
+	 * @return the resources used by the script, or null if not known
+	 */
+	public synchronized ScriptUsage get(final String identity) {
+		return usages.get(identity);
+	}
+
+	/**
+	 * @param count the maximal number of scripts to return
+	 * @return the most expensive scripts, by CPU time (or by wall-clock time if
+	 *         CPU time is not measured), most expensive first
+	 */
+	public List<ScriptUsage> getHeaviest(final int count) {
+		final List<ScriptUsage> result;
+		synchronized (this) {
+			result = new ArrayList<ScriptUsage>(usages.values());
+		}
+		Collections.sort(result, new Comparator<ScriptUsage>() {
+
+			@Override
+			public int compare(final ScriptUsage a, final ScriptUsage b) {
+				final long costA = a.cost(), costB = b.cost();
+				return costA > costB ? -1 : costA < costB ? 1 : 0;
+			}
+		});
+		return result.subList(0, Math.min(count, result.size()));
+	}
+
+	/** @return the number of scripts tracked */
+	public synchronized int size() {
+		return usages.size();
+	}
+
+	/** Forgets all scripts. */
+	public synchronized void clear() {
+		usages.clear();
+	}
+
+	/**
+	 * Takes a snapshot of the resources used so far, before evaluating a
+	 * script on the current thread.
+	 * 
+	 * @return the snapshot, to pass to {@link #end}
+	 */
+	static Execution begin() {
+		return new Execution();
+	}
+
+	/**
+	 * Records an execution of a script.
+	 * 
+	 * @param execution the snapshot taken before the evaluation
+	 * @param identity the identity of the script
+	 * @param className the name of the script's class
+	 * @param failed whether the script failed
+	 */
+	void end(final Execution execution, final String identity,
+		final String className, final boolean failed)
+	{
+		final long wall = System.nanoTime() - execution.start;
+		final long cpu = delta(ThreadUsage.cpuTime(execution.thread),
+			execution.cpu);
+		final long allocated = delta(ThreadUsage.allocatedBytes(execution.thread),
+			execution.allocated);
+		synchronized (this) {
+			ScriptUsage usage = usages.get(identity);
+			if (usage == null) {
+				if (usages.size() >= capacity) evictCheapest();
+				usage = new ScriptUsage(identity, className, 0, 0, 0, 0, 0, 0);
+			}
+			usages.put(identity, usage.plus(className, failed, cpu, allocated,
+				wall));
+		}
+	}
+
+	// -- Helper methods --
+
+	private void evictCheapest() {
+		ScriptUsage cheapest = null;
+		for (final ScriptUsage usage : usages.values()) {
+			if (cheapest == null || usage.cost() < cheapest.cost()) cheapest = usage;
+		}
+		if (cheapest != null) usages.remove(cheapest.getIdentity());
+	}
+
+	private static long delta(final long after, final long before) {
+		return after < 0 || before < 0 ? -1 : after - before;
+	}
+
+	// -- Helper classes --
+
+	/** A snapshot of the resources used before evaluating a script. */
+	static class Execution {
+
+		private final long thread = Thread.currentThread().getId();
+		private final long cpu = ThreadUsage.cpuTime(thread);
+		private final long allocated = ThreadUsage.allocatedBytes(thread);
+		private final long start = System.nanoTime();
+
+		private Execution() {
+			// NB: Instantiated by begin() only.
+		}
+	}
+
+}
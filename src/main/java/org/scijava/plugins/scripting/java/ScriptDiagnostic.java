@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * A problem reported by the compiler, as found by {@link JavaEngine#check}.
+ */
+public class ScriptDiagnostic {
+
+	private final Kind kind;
+	private final String source;
+	private final long line;
+	private final long column;
+	private final String message;
+
+	/**
+	 * @param kind the kind of problem
+	 * @param source the path of the offending source file, or null
+	 * @param line the line number, starting at 1, or {@link Diagnostic#NOPOS}
+	 * @param column the column number, starting at 1, or
+	 *          {@link Diagnostic#NOPOS}
+	 * @param message the compiler's message
+	 */
+	public ScriptDiagnostic(final Kind kind, final String source,
+		final long line, final long column, final String message)
+	{
+		this.kind = kind;
+		this.source = source;
+		this.line = line;
+		this.column = column;
+		this.message = message;
+	}
+
+	/** @return the kind of problem, e.g. {@link Kind#ERROR} */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/** @return the path of the offending source file, or null */
+	public String getSource() {
+		return source;
+	}
+
+	/** @return the line number, starting at 1, or {@link Diagnostic#NOPOS} */
+	public long getLine() {
+		return line;
+	}
+
+	/** @return the column number, starting at 1, or {@link Diagnostic#NOPOS} */
+	public long getColumn() {
+		return column;
+	}
+
+	/** @return the compiler's message */
+	public String getMessage() {
+		return message;
+	}
+
+	/** @return whether this problem prevents the script from compiling */
+	public boolean isError() {
+		return kind == Kind.ERROR;
+	}
+
+	/**
+	 * Formats this problem the way {@code javac} reports it on the command
+	 * line.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		if (source != null) {
+			builder.append(source);
+			if (line != Diagnostic.NOPOS) builder.append(':').append(line);
+			builder.append(": ");
+		}
+		builder.append(kind.toString().toLowerCase(Locale.ENGLISH));
+		builder.append(": ").append(message);
+		return builder.toString();
+	}
+
+}
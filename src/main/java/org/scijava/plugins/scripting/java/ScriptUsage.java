@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.Locale;
+
+/**
+ * The resources used by all executions of one script, as recorded by
+ * {@link ScriptAccounting}.
+ * <p>
+ * CPU time and allocations are those of the thread evaluating the script and
+ * of the threads it started that were still alive when it finished; they are
+ * -1 if the JVM does not measure them. Times are reported in milliseconds.
+ * </p>
+ */
+public class ScriptUsage {
+
+	private final String identity;
+	private final String className;
+	private final long executions;
+	private final long failures;
+	private final long cpuTime;
+	private final long allocatedBytes;
+	private final long wallTime;
+	private final long maxWallTime;
+
+	ScriptUsage(final String identity, final String className,
+		final long executions, final long failures, final long cpuTime,
+		final long allocatedBytes, final long wallTime, final long maxWallTime)
+	{
+		this.identity = identity;
+		this.className = className;
+		this.executions = executions;
+		this.failures = failures;
+		this.cpuTime = cpuTime;
+		this.allocatedBytes = allocatedBytes;
+		this.wallTime = wallTime;
+		this.maxWallTime = maxWallTime;
+	}
+
+	/**
+	 * @return the path of the script file, or the SHA-1 digest of the source
+	 *         code prefixed with {@code sha1:}
+	 */
+	public String getIdentity() {
+		return identity;
+	}
+
+	/** @return the name of the script's class when it last ran */
+	public String getClassName() {
+		return className;
+	}
+
+	/** @return the number of times the script was run */
+	public long getExecutions() {
+		return executions;
+	}
+
+	/** @return the number of times the script failed */
+	public long getFailures() {
+		return failures;
+	}
+
+	/** @return the total CPU time, or -1 if not measured */
+	public double getCpuTime() {
+		return cpuTime < 0 ? -1 : millis(cpuTime);
+	}
+
+	/** @return the total number of bytes allocated, or -1 if not measured */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/** @return the total wall-clock time */
+	public double getWallTime() {
+		return millis(wallTime);
+	}
+
+	/** @return the longest wall-clock time of a single execution */
+	public double getMaxWallTime() {
+		return millis(maxWallTime);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH,
+			"%s (%s): %d executions, %d failed, CPU %.3f ms, " +
+				"allocated %d bytes, wall %.3f ms (max %.3f ms)", identity, className,
+			executions, failures, getCpuTime(), allocatedBytes, getWallTime(),
+			getMaxWallTime());
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Adds one execution.
+	 * 
+	 * @return the accumulated usage
+	 */
+	ScriptUsage plus(final String name, final boolean failed, final long cpu,
+		final long allocated, final long wall)
+	{
+		return new ScriptUsage(identity, name, executions + 1, failures +
+			(failed ? 1 : 0), add(cpuTime, cpu), add(allocatedBytes, allocated),
+			wallTime + wall, Math.max(maxWallTime, wall));
+	}
+
+	/** @return the cost to rank scripts by: CPU time if measured, else wall */
+	long cost() {
+		return cpuTime >= 0 ? cpuTime : wallTime;
+	}
+
+	private static long add(final long total, final long value) {
+		return total < 0 || value < 0 ? -1 : total + value;
+	}
+
+	private static double millis(final long nanos) {
+		return nanos / 1e6;
+	}
+
+}
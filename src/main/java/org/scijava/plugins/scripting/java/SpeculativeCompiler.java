@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles the latest revision of a script in the background.
+ * <p>
+ * Revisions are debounced: a compile starts only once no newer revision was
+ * submitted for the configured delay. A new revision cancels the compile of
+ * the previous one if it is still waiting. A compile that is already running
+ * cannot be stopped, as {@code javac} and MiniMaven ignore interrupts: it runs
+ * to completion, holding its {@link CompileScheduler} slot, but it is
+ * interrupted so that it knows to discard its result rather than cache it.
+ * Callers who need the class of a given revision can {@link #await} it
+ * instead of compiling it a second time.
+ * </p>
+ */
+class SpeculativeCompiler {
+
+	/** The default time to wait for further revisions, in milliseconds. */
+	static final long DEFAULT_DELAY = 300;
+
+	private static final ScheduledThreadPoolExecutor COMPILERS =
+		new ScheduledThreadPoolExecutor(2, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable,
+					"JavaEngine speculative compiler-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+
+	static {
+		COMPILERS.setKeepAliveTime(10, TimeUnit.SECONDS);
+		COMPILERS.allowCoreThreadTimeOut(true);
+		COMPILERS.setRemoveOnCancelPolicy(true);
+	}
+
+	private volatile long delay = DEFAULT_DELAY;
+
+	/** The most recently submitted revision. */
+	private Revision latest;
+
+	/**
+	 * Sets the time to wait for further revisions before compiling.
+	 * 
+	 * @param delay the delay, in milliseconds
+	 */
+	void setDelay(final long delay) {
+		this.delay = Math.max(0, delay);
+	}
+
+	/**
+	 * Submits a new revision, superseding the previous one: its compile is
+	 * cancelled if still waiting, or interrupted if already running.
+	 * 
+	 * @param key identifies the revision's source code and compiler profile; a
+	 *          revision with the same key as the previous one is ignored
+	 * @param compile compiles the revision
+	 */
+	synchronized void submit(final String key,
+		final Callable<Class<?>> compile)
+	{
+		if (latest != null) {
+			if (latest.key.equals(key) && !latest.task.isCancelled()) return;
+			latest.cancel();
+		}
+		final Revision revision = new Revision(key, compile);
+		revision.timer = COMPILERS.schedule(revision, delay, TimeUnit.MILLISECONDS);
+		latest = revision;
+	}
+
+	/** Cancels the compile of the most recently submitted revision, if any. */
+	synchronized void cancel() {
+		if (latest != null) latest.cancel();
+		latest = null;
+	}
+
+	/**
+	 * Waits for the class compiled from the given revision.
+	 * <p>
+	 * If that revision's compile has not started yet, it is cancelled rather
+	 * than waited for, as the caller can compile the revision right away.
+	 * </p>
+	 * 
+	 * @param key identifies the revision
+	 * @return the compiled class, or null if the revision was not compiled
+	 *         successfully in the background
+	 */
+	Class<?> await(final String key) {
+		final Revision revision;
+		synchronized (this) {
+			revision = latest;
+		}
+		if (revision == null || !revision.key.equals(key)) return null;
+		if (revision.started.compareAndSet(false, true)) {
+			revision.cancel();
+			return null;
+		}
+		try {
+			return revision.task.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final CancellationException e) {
+			// NB: Superseded by a newer revision.
+		}
+		catch (final ExecutionException e) {
+			// NB: The caller will compile again, and report the errors.
+		}
+		return null;
+	}
+
+	// -- Helper classes --
+
+	private static class Revision implements Runnable {
+
+		private final String key;
+		private final FutureTask<Class<?>> task;
+		private final AtomicBoolean started = new AtomicBoolean();
+		private volatile ScheduledFuture<?> timer;
+
+		private Revision(final String key, final Callable<Class<?>> compile) {
+			this.key = key;
+			task = new FutureTask<Class<?>>(compile);
+		}
+
+		@Override
+		public void run() {
+			if (started.compareAndSet(false, true)) task.run();
+		}
+
+		private void cancel() {
+			if (timer != null) timer.cancel(false);
+			task.cancel(true);
+		}
+	}
+
+}
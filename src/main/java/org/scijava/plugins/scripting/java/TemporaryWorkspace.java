@@ -0,0 +1,429 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.util.FileUtils;
+
+/**
+ * Manages the temporary directories in which the {@link JavaEngine} builds
+ * its throw-away Maven projects.
+ * <p>
+ * All directories live below one root directory per JVM. Released directories
+ * are emptied and pooled for reuse; directories that cannot be deleted right
+ * away (e.g. because a class loader still holds one of their {@code .jar}
+ * files open) are retried on a background thread instead of being registered
+ * via {@link File#deleteOnExit()}, whose list would grow without bound in
+ * long-lived JVMs. The disk space taken up by such directories is bounded.
+ * </p>
+ * <p>
+ * The root directory is marked with a file lock that is held as long as the
+ * JVM lives; upon startup, root directories whose lock is not held anymore
+ * are left over from crashed JVMs, and are removed. The marker is locked
+ * before it appears under its final name, and lock files held by this JVM
+ * are never opened for probing: closing any file descriptor of a file drops
+ * all of the process' POSIX locks on it.
+ * </p>
+ */
+class TemporaryWorkspace {
+
+	private static final String PREFIX = "scijava-java-";
+	private static final String LOCK_FILE = ".lock";
+
+	/** Maximal number of empty directories kept for reuse. */
+	private static final int MAX_POOLED = 8;
+
+	/** Default limit of disk space occupied by undeletable directories. */
+	private static final long DEFAULT_MAX_PENDING_BYTES = 1024L * 1024 * 1024;
+
+	/** Delays between the attempts to delete a directory, in milliseconds. */
+	private static final long MIN_RETRY_DELAY = 1000, MAX_RETRY_DELAY = 300000;
+
+	/** Root directories without a lock file are deleted after this long. */
+	private static final long ORPHAN_GRACE_PERIOD = 60000;
+
+	private static TemporaryWorkspace defaultWorkspace;
+
+	/** The lock files held by the workspaces of this JVM. */
+	private static final Set<File> HELD =
+		Collections.synchronizedSet(new HashSet<File>());
+
+	private final File root;
+	private final long maxPendingBytes;
+	private final File marker;
+	private final RandomAccessFile lockFile;
+	private final FileLock lock;
+	private final ScheduledThreadPoolExecutor reaper;
+
+	private final Deque<File> pool = new ArrayDeque<File>();
+	private final Map<File, Long> pending = new LinkedHashMap<File, Long>();
+	private long pendingBytes;
+	private long retryDelay = MIN_RETRY_DELAY;
+	private boolean retryScheduled;
+	private int inUse;
+	private int counter;
+
+	/**
+	 * Creates a workspace in the specified directory.
+	 * 
+	 * @param parent the directory in which to create the root directory
+	 * @param maxPendingBytes the maximal number of bytes that undeletable
+	 *          directories may occupy before {@link #acquire()} fails
+	 * @throws IOException if the root directory could not be created
+	 */
+	TemporaryWorkspace(final File parent, final long maxPendingBytes)
+		throws IOException
+	{
+		this.maxPendingBytes = maxPendingBytes;
+		root = FileUtils.createTemporaryDirectory(PREFIX, "", parent);
+		marker = new File(root, LOCK_FILE).getAbsoluteFile();
+		HELD.add(marker);
+		// lock the marker before other JVMs can see it
+		final File hidden = new File(root, LOCK_FILE + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(hidden, "rw");
+		FileLock fileLock = file.getChannel().lock();
+		if (!hidden.renameTo(marker)) {
+			// NB: Some platforms cannot rename open files; lock it in place.
+			fileLock.release();
+			file.close();
+			hidden.delete();
+			file = new RandomAccessFile(marker, "rw");
+			fileLock = file.getChannel().lock();
+		}
+		lockFile = file;
+		lock = fileLock;
+
+		reaper = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread =
+					new Thread(runnable, "JavaEngine temporary directory reaper");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		reaper.setKeepAliveTime(10, TimeUnit.SECONDS);
+		reaper.allowCoreThreadTimeOut(true);
+		reaper.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				deleteOrphans(parent);
+			}
+		});
+	}
+
+	/**
+	 * Gets the workspace shared by all engines of this JVM, creating it in the
+	 * system's temporary directory if necessary.
+	 * 
+	 * @return the shared workspace
+	 * @throws IOException if the workspace could not be created
+	 */
+	static synchronized TemporaryWorkspace getDefault() throws IOException {
+		if (defaultWorkspace == null) {
+			final File parent = new File(System.getProperty("java.io.tmpdir"));
+			final TemporaryWorkspace workspace =
+				new TemporaryWorkspace(parent, DEFAULT_MAX_PENDING_BYTES);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+
+				@Override
+				public void run() {
+					workspace.close();
+				}
+			});
+			defaultWorkspace = workspace;
+		}
+		return defaultWorkspace;
+	}
+
+	/**
+	 * Gets the workspace shared by all engines of this JVM, without creating
+	 * it.
+	 * 
+	 * @return the shared workspace, or null if it was not needed yet
+	 */
+	static synchronized TemporaryWorkspace getExistingDefault() {
+		return defaultWorkspace;
+	}
+
+	/**
+	 * Provides an empty directory.
+	 * 
+	 * @return the directory, to be handed back via {@link #release(File)}
+	 * @throws IOException if the directory could not be created, or if
+	 *           undeletable directories exceed the allowed disk space
+	 */
+	File acquire() throws IOException {
+		if (overBudget()) {
+			// try to make room before giving up
+			retryPending();
+			if (overBudget()) {
+				throw new IOException("Undeletable temporary directories in " + root +
+					" exceed " + maxPendingBytes + " bytes");
+			}
+		}
+		synchronized (this) {
+			inUse++;
+			final File pooled = pool.poll();
+			if (pooled != null) return pooled;
+			final File directory = new File(root, "project-" + ++counter);
+			if (!directory.mkdir() && !directory.isDirectory()) {
+				inUse--;
+				throw new IOException("Could not create " + directory);
+			}
+			return directory;
+		}
+	}
+
+	/**
+	 * Hands back a directory obtained via {@link #acquire()}.
+	 * <p>
+	 * The directory is emptied and pooled for reuse; if that fails, it is
+	 * deleted later on a background thread.
+	 * </p>
+	 * 
+	 * @param directory the directory to release
+	 */
+	void release(final File directory) {
+		final boolean empty = deleteContents(directory);
+		synchronized (this) {
+			inUse--;
+			if (empty && pool.size() < MAX_POOLED) {
+				pool.push(directory);
+				return;
+			}
+		}
+		if (empty && directory.delete()) return;
+		final long size = size(directory);
+		synchronized (this) {
+			final Long previous = pending.put(directory, size);
+			pendingBytes += size - (previous == null ? 0 : previous);
+			scheduleRetry();
+		}
+	}
+
+	/**
+	 * Determines whether the specified file lives inside this workspace.
+	 * 
+	 * @param file the file to test
+	 * @return whether the file is inside this workspace
+	 */
+	boolean contains(final File file) {
+		if (file == null) return false;
+		final String path = file.getAbsolutePath();
+		final String prefix = root.getAbsolutePath() + File.separator;
+		return path.startsWith(prefix);
+	}
+
+	/**
+	 * @return the number of directories acquired but not yet released
+	 */
+	synchronized int getDirectoriesInUse() {
+		return inUse;
+	}
+
+	/**
+	 * @return the number of released directories still waiting for deletion
+	 */
+	synchronized int getPendingDirectories() {
+		return pending.size();
+	}
+
+	/**
+	 * Deletes the workspace, including all of its directories.
+	 */
+	void close() {
+		reaper.shutdownNow();
+		try {
+			lock.release();
+			lockFile.close();
+		}
+		catch (final IOException e) {
+			// NB: The lock is released when the JVM exits anyway.
+		}
+		HELD.remove(marker);
+		FileUtils.deleteRecursively(root);
+	}
+
+	// -- Helper methods --
+
+	private synchronized boolean overBudget() {
+		return pendingBytes > maxPendingBytes;
+	}
+
+	private synchronized void scheduleRetry() {
+		if (retryScheduled || pending.isEmpty() || reaper.isShutdown()) return;
+		retryScheduled = true;
+		reaper.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (TemporaryWorkspace.this) {
+					retryScheduled = false;
+				}
+				retryPending();
+			}
+		}, retryDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Tries to delete the directories that could not be deleted previously,
+	 * backing off exponentially while some of them remain.
+	 */
+	private void retryPending() {
+		final List<File> candidates;
+		synchronized (this) {
+			candidates = new ArrayList<File>(pending.keySet());
+		}
+		final List<File> deleted = new ArrayList<File>();
+		for (final File directory : candidates) {
+			if (FileUtils.deleteRecursively(directory) || !directory.exists()) {
+				deleted.add(directory);
+			}
+		}
+		synchronized (this) {
+			for (final File directory : deleted) {
+				final Long size = pending.remove(directory);
+				if (size != null) pendingBytes -= size;
+			}
+			retryDelay = deleted.isEmpty() ? Math.min(2 * retryDelay,
+				MAX_RETRY_DELAY) : MIN_RETRY_DELAY;
+			scheduleRetry();
+		}
+	}
+
+	/**
+	 * Deletes the root directories left behind by JVMs that did not shut down
+	 * cleanly.
+	 */
+	private void deleteOrphans(final File parent) {
+		final File[] list = parent.listFiles();
+		if (list == null) return;
+		for (final File directory : list) {
+			if (!directory.getName().startsWith(PREFIX) || directory.equals(root) ||
+				!directory.isDirectory())
+			{
+				continue;
+			}
+			final File marker = new File(directory, LOCK_FILE);
+			if (!marker.exists()) {
+				// the owner might just be starting up
+				if (System.currentTimeMillis() - directory.lastModified() >
+					ORPHAN_GRACE_PERIOD)
+				{
+					FileUtils.deleteRecursively(directory);
+				}
+				continue;
+			}
+			if (isAbandoned(marker)) FileUtils.deleteRecursively(directory);
+		}
+	}
+
+	/**
+	 * Determines whether the lock of another workspace's root directory is not
+	 * held anymore.
+	 */
+	static boolean isAbandoned(final File marker) {
+		// NB: Probing our own locks would drop them.
+		if (HELD.contains(marker.getAbsoluteFile())) return false;
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(marker, "rw");
+			final FileChannel channel = file.getChannel();
+			final FileLock lock = channel.tryLock();
+			if (lock == null) return false;
+			lock.release();
+			return true;
+		}
+		catch (final IOException e) {
+			return false;
+		}
+		catch (final OverlappingFileLockException e) {
+			// locked by this very JVM
+			return false;
+		}
+		finally {
+			if (file != null) {
+				try {
+					file.close();
+				}
+				catch (final IOException e) {
+					// NB: No action needed.
+				}
+			}
+		}
+	}
+
+	private static boolean deleteContents(final File directory) {
+		final File[] list = directory.listFiles();
+		if (list == null) return false;
+		boolean result = true;
+		for (final File file : list) {
+			if (!FileUtils.deleteRecursively(file)) result = false;
+		}
+		return result;
+	}
+
+	private static long size(final File file) {
+		if (!file.isDirectory()) return file.length();
+		final File[] list = file.listFiles();
+		if (list == null) return 0;
+		long result = 0;
+		for (final File child : list) {
+			result += size(child);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the resources used by the current thread, where the JVM supports
+ * it.
+ */
+class ThreadUsage {
+
+	private static final ThreadMXBean THREADS =
+		ManagementFactory.getThreadMXBean();
+
+	private ThreadUsage() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, or -1 if not
+	 *         supported
+	 */
+	static long allocatedBytes() {
+		return allocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @param threadId the ID of a live thread
+	 * @return the bytes allocated by the thread so far, or -1 if not supported
+	 *         or if the thread is not alive anymore
+	 */
+	static long allocatedBytes(final long threadId) {
+		if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return -1;
+		final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) THREADS;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads
+			.isThreadAllocatedMemoryEnabled())
+		{
+			return -1;
+		}
+		return threads.getThreadAllocatedBytes(threadId);
+	}
+
+	/**
+	 * @param threadId the ID of a live thread
+	 * @return the CPU time used by the thread so far, in nanoseconds, or -1 if
+	 *         not supported or if the thread is not alive anymore
+	 */
+	static long cpuTime(final long threadId) {
+		if (!THREADS.isThreadCpuTimeSupported() || !THREADS
+			.isThreadCpuTimeEnabled())
+		{
+			return -1;
+		}
+		return THREADS.getThreadCpuTime(threadId);
+	}
+
+}
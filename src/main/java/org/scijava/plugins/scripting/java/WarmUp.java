@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+
+import org.scijava.Context;
+import org.scijava.minimaven.BuildEnvironment;
+
+/**
+ * Warms up the {@link JavaEngine} in the background.
+ * <p>
+ * The first compile in a JVM pays for loading ClassGraph and scanning the
+ * class path, for setting up the temporary workspace, MiniMaven and the XML
+ * parsers, and for {@code javac} running in the interpreter. Warming up does
+ * all that ahead of time, on a low-priority thread, and optionally compiles
+ * trivial scripts end to end: one needing nothing but the JDK, and one built
+ * by MiniMaven. Either step is done at most once per JVM; a step that failed
+ * is tried again by the next warm-up.
+ * </p>
+ */
+class WarmUp {
+
+	/** Needs nothing but the JDK, hence is compiled in memory. */
+	private static final String JDK_ONLY = "" + //
+		"package warmup;\n" + //
+		"import java.util.concurrent.Callable;\n" + //
+		"public class JdkOnly implements Callable<String> {\n" + //
+		"\tpublic String call() { return getClass().getName(); }\n" + //
+		"}\n";
+
+	/** Needs the SciJava class path, hence is built by MiniMaven. */
+	private static final String BUILT = "" + //
+		"package warmup;\n" + //
+		"import org.scijava.Context;\n" + //
+		"public class Built {\n" + //
+		"\tpublic static void main(final String[] args) {\n" + //
+		"\t\tSystem.out.println(Context.class.getName());\n" + //
+		"\t}\n" + //
+		"}\n";
+
+	private static final ThreadPoolExecutor WORKER = new ThreadPoolExecutor(1,
+		1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory()
+		{
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "JavaEngine warm-up");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+
+	static {
+		WORKER.allowCoreThreadTimeOut(true);
+	}
+
+	// NB: Written by one worker thread at a time, which may be replaced.
+	private static volatile boolean prepared, compiled;
+
+	private WarmUp() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Starts warming up, unless done already.
+	 * 
+	 * @param compile whether to compile trivial scripts end to end, too
+	 * @param language the language whose context and compiler profile to
+	 *          compile them with
+	 * @return the pending warm-up, failing if a step failed
+	 */
+	static Future<Void> start(final boolean compile,
+		final JavaScriptLanguage language)
+	{
+		return WORKER.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				if (!prepared) {
+					prepare();
+					prepared = true;
+				}
+				if (compile && !compiled) {
+					compile(language);
+					compiled = true;
+				}
+				return null;
+			}
+		});
+	}
+
+	// -- Helper methods --
+
+	private static void prepare() throws Exception {
+		JavaEngine.scanClassPath();
+		TemporaryWorkspace.getDefault();
+		new BuildEnvironment(null, true, false, false);
+		DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		TransformerFactory.newInstance().newTransformer();
+		InMemoryCompiler.isAvailable();
+	}
+
+	private static void compile(final JavaScriptLanguage language)
+		throws Exception
+	{
+		final Context context = language.getContext();
+		if (context == null) {
+			throw new IllegalStateException("The language has no context");
+		}
+		// NB: Not the language's engine, so as not to count in its statistics.
+		final JavaEngine engine = new JavaEngine();
+		context.inject(engine);
+		engine.setProfile(language.getProfile());
+		engine.getContext().setErrorWriter(null);
+		// do not delay the compiles someone is waiting for
+		engine.put(JavaEngine.COMPILE_PRIORITY, CompileScheduler.Priority.BATCH);
+		engine.compile(JDK_ONLY);
+		engine.compile(BUILT);
+	}
+
+}
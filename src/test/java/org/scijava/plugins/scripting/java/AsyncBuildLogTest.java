@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AsyncBuildLog}.
+ */
+public class AsyncBuildLogTest {
+
+	@Test
+	public void testSlowWriter() throws Exception {
+		final CountDownLatch released = new CountDownLatch(1);
+		final StringWriter writer = new StringWriter() {
+
+			@Override
+			public void flush() {
+				try {
+					released.await();
+				}
+				catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+
+		final AsyncBuildLog log = new AsyncBuildLog(writer);
+		final PrintStream out = new PrintStream(log);
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < 100000; i++) {
+			out.println("line " + i);
+		}
+		out.close();
+		// the blocked writer must not have held up the producer
+		assertTrue(System.currentTimeMillis() - start < 10000);
+
+		released.countDown();
+		assertTrue(log.awaitDrained(10000));
+		// the buffered lines come first, in order, then the dropped ones' count
+		final String[] output = writer.toString().split("\n");
+		final int kept = output.length - 1;
+		for (int i = 0; i < kept; i++) {
+			assertEquals("line " + i, output[i]);
+		}
+		assertEquals("[... " + (100000 - kept) +
+			" line(s) of build output dropped ...]", output[kept]);
+	}
+
+	@Test
+	public void testDroppedInOrder() throws Exception {
+		final CountDownLatch released = new CountDownLatch(1);
+		final StringWriter writer = new StringWriter() {
+
+			@Override
+			public void flush() {
+				try {
+					released.await();
+				}
+				catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+
+		final AsyncBuildLog log = new AsyncBuildLog(writer);
+		final PrintStream out = new PrintStream(log);
+		for (int i = 0; i < 10000; i++) {
+			out.println("line " + i);
+		}
+		released.countDown();
+		// wait for the buffer to drain, then log some more
+		for (int i = 0; i < 1000 && !writer.toString().contains("line 4000\n"); i++)
+		{
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		out.println("after");
+		out.close();
+		assertTrue(log.awaitDrained(10000));
+		final String output = writer.toString();
+		final int marker = output.indexOf(" line(s) of build output dropped ...]");
+		assertTrue(marker > output.lastIndexOf("\nline "));
+		assertTrue(output.endsWith("dropped ...]\nafter\n"));
+	}
+
+	@Test
+	public void testOrder() throws IOException, InterruptedException {
+		final StringWriter writer = new StringWriter();
+		final AsyncBuildLog log = new AsyncBuildLog(writer);
+		final PrintStream out = new PrintStream(log);
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			out.println("line " + i);
+			expected.append("line ").append(i).append('\n');
+		}
+		out.print("incomplete");
+		expected.append("incomplete\n");
+		out.close();
+		assertTrue(log.awaitDrained(10000));
+		assertEquals(expected.toString(), writer.toString());
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.script.ScriptException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.object.ObjectService;
+import org.scijava.run.RunService;
+import org.scijava.script.ScriptService;
+
+/**
+ * Verifies that compiled scripts can be unloaded once they are not referenced
+ * anymore.
+ * <p>
+ * Each test compiles (and possibly runs) scripts through a fresh
+ * {@link JavaEngine}, drops the engine, and then checks via weak references
+ * that neither the classes nor their class loaders survive garbage
+ * collection, i.e. that nothing (the thread's context class loader, the
+ * {@link RunService}, a static cache, ...) pins them. The context, and hence
+ * its services, stay alive on purpose.
+ * </p>
+ */
+public class ClassUnloadingTest {
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context =
+			new Context(ScriptService.class, ObjectService.class, RunService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testCompileJdkOnly() throws Exception {
+		assertUnloaded(compile(false, "package unload;\n" + //
+			"import java.util.Arrays;\n" + //
+			"public class JdkOnly {}\n"));
+	}
+
+	@Test
+	public void testCompileMiniMaven() throws Exception {
+		assertUnloaded(compile(false, "package unload;\n" + //
+			"import org.scijava.util.FileUtils;\n" + //
+			"public class MiniMaven {}\n"));
+	}
+
+	@Test
+	public void testEval() throws Exception {
+		assertUnloaded(compile(true, "package unload;\n" + //
+			"import org.scijava.util.FileUtils;\n" + //
+			"public class Evaluated {\n" + //
+			"\tpublic static Object field;\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tfield = new Evaluated();\n" + //
+			"\t}\n" + //
+			"}\n", "package unload;\n" + //
+			"public class EvaluatedJdkOnly {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tThread.currentThread().getName();\n" + //
+			"\t}\n" + //
+			"}\n"));
+	}
+
+	@Test
+	public void testEvalCommand() throws Exception {
+		assertUnloaded(compile(true, "package unload;\n" + //
+			"import org.scijava.command.Command;\n" + //
+			"import org.scijava.plugin.Parameter;\n" + //
+			"public class Commanded implements Command {\n" + //
+			"\t@Parameter\n" + //
+			"\tprivate String name = \"unused\";\n" + //
+			"\tpublic void run() {}\n" + //
+			"}\n"));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Compiles (or evaluates) the given scripts in a throw-away engine.
+	 * 
+	 * @return weak references to the compiled classes and their class loaders
+	 */
+	private List<WeakReference<Object>> compile(final boolean eval,
+		final String... scripts) throws ScriptException
+	{
+		final JavaScriptLanguage java = context.getService(ObjectService.class)
+			.getObjects(JavaScriptLanguage.class).get(0);
+		final JavaEngine engine = (JavaEngine) java.getScriptEngine();
+		engine.getContext().setErrorWriter(null);
+		final List<WeakReference<Object>> result =
+			new ArrayList<WeakReference<Object>>();
+		for (final String script : scripts) {
+			if (eval) engine.eval(script);
+			final Class<?> clazz = engine.compile(script);
+			assertTrue(clazz != null);
+			result.add(new WeakReference<Object>(clazz));
+			result.add(new WeakReference<Object>(clazz.getClassLoader()));
+		}
+		return result;
+	}
+
+	private static void assertUnloaded(final List<WeakReference<Object>> refs)
+		throws InterruptedException
+	{
+		final ClassLoadingMXBean classLoading =
+			ManagementFactory.getClassLoadingMXBean();
+		final long unloaded = classLoading.getUnloadedClassCount();
+		for (int i = 0; i < 20 && !cleared(refs); i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		for (final WeakReference<Object> ref : refs) {
+			assertNull("Still reachable: " + ref.get(), ref.get());
+		}
+		// one class per script, and one class loader per class
+		assertTrue(classLoading.getUnloadedClassCount() - unloaded >= refs
+			.size() / 2);
+	}
+
+	private static boolean cleared(final List<WeakReference<Object>> refs) {
+		for (final WeakReference<Object> ref : refs) {
+			if (ref.get() != null) return false;
+		}
+		return true;
+	}
+
+}
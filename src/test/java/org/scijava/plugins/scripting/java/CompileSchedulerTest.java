@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.script.ScriptException;
+
+import org.junit.Test;
+import org.scijava.plugins.scripting.java.CompileScheduler.Priority;
+
+/**
+ * Tests {@link CompileScheduler}.
+ */
+public class CompileSchedulerTest {
+
+	@Test
+	public void testPriorities() throws Exception {
+		final CompileScheduler scheduler = new CompileScheduler(1, 2);
+		scheduler.acquire(Priority.INTERACTIVE);
+		assertEquals(1, scheduler.getRunning());
+
+		final List<String> admitted =
+			Collections.synchronizedList(new ArrayList<String>());
+		final Thread batch = compile(scheduler, Priority.BATCH, "batch", admitted);
+		awaitQueued(scheduler, 1);
+		final Thread interactive =
+			compile(scheduler, Priority.INTERACTIVE, "interactive", admitted);
+		awaitQueued(scheduler, 2);
+
+		// the queue is full
+		try {
+			scheduler.acquire(Priority.INTERACTIVE);
+			fail("Compile was not rejected");
+		}
+		catch (final ScriptException e) {
+			assertEquals(1, scheduler.getRejected());
+		}
+
+		scheduler.release();
+		batch.join(10000);
+		interactive.join(10000);
+		assertEquals("[interactive, batch]", admitted.toString());
+		assertEquals(0, scheduler.getRunning());
+		assertEquals(0, scheduler.getQueued());
+		assertTrue(scheduler.getMaxWaitTime() > 0);
+	}
+
+	@Test
+	public void testHeapLimit() throws Exception {
+		final CompileScheduler scheduler = new CompileScheduler(4, 4);
+		scheduler.setMinFreeHeap(Long.MAX_VALUE);
+		// a single compile is admitted regardless of the heap
+		scheduler.acquire(Priority.INTERACTIVE);
+		final List<String> admitted =
+			Collections.synchronizedList(new ArrayList<String>());
+		final Thread second =
+			compile(scheduler, Priority.INTERACTIVE, "second", admitted);
+		awaitQueued(scheduler, 1);
+		Thread.sleep(300);
+		assertTrue(admitted.isEmpty());
+
+		scheduler.setMinFreeHeap(0);
+		second.join(10000);
+		assertEquals("[second]", admitted.toString());
+		scheduler.release();
+	}
+
+	private Thread compile(final CompileScheduler scheduler,
+		final Priority priority, final String name, final List<String> admitted)
+	{
+		final Thread thread = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					scheduler.acquire(priority);
+					admitted.add(name);
+					scheduler.release();
+				}
+				catch (final ScriptException e) {
+					admitted.add(e.getMessage());
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private void awaitQueued(final CompileScheduler scheduler, final int count)
+		throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (scheduler.getQueued() < count) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.scijava.minimaven.BuildEnvironment;
+
+/**
+ * Times {@link JavaEngine#fakeDependencies} on class paths with thousands of
+ * same-named {@code .jar} files.
+ * <p>
+ * This test is excluded from the regular build; run it via
+ * {@code mvn -Pload-tests test}. The time per class path entry is reported
+ * for a small and a large class path; the test fails if it grows
+ * noticeably with the size of the class path, i.e. if faking is not linear.
+ * </p>
+ */
+public class FakeDependenciesLoadTest {
+
+	private static final int SMALL = 1000, LARGE = 16 * SMALL;
+
+	/** Runs per size; the fastest one counts. */
+	private static final int RUNS = 5;
+
+	/** Tolerated growth of the time per entry, far below quadratic's 16. */
+	private static final double MAX_GROWTH = 4;
+
+	@Test
+	public void testLinearTime() {
+		// warm up, so that class loading and JIT compilation do not count
+		time(SMALL);
+		final double small = time(SMALL) / SMALL;
+		final double large = time(LARGE) / LARGE;
+		System.out.println(String.format(Locale.ENGLISH,
+			"Faking dependencies: %.2f us/entry for %d entries, " +
+				"%.2f us/entry for %d entries", small / 1e3, SMALL, large / 1e3,
+			LARGE));
+		assertTrue(String.format(Locale.ENGLISH, "%.2f vs %.2f us/entry",
+			large / 1e3, small / 1e3), large <= MAX_GROWTH * small);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * @return the fastest of several runs faking the given number of
+	 *         same-named {@code .jar} files, in nanoseconds
+	 */
+	private static double time(final int count) {
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			files.add(new File("lib" + i, "imglib2.jar"));
+		}
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			final BuildEnvironment env =
+				new BuildEnvironment(null, false, false, false);
+			final long start = System.nanoTime();
+			final int faked = JavaEngine.fakeDependencies(env, files).size();
+			best = Math.min(best, System.nanoTime() - start);
+			assertEquals(count, faked);
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.object.ObjectService;
+import org.scijava.run.RunService;
+import org.scijava.script.ScriptService;
+
+/**
+ * Tests {@link FlightRecorder}.
+ * <p>
+ * The Flight Recorder API is accessed via reflection, as the tests are
+ * compiled for Java 8, too.
+ * </p>
+ */
+public class FlightRecorderTest {
+
+	@Test
+	public void testDisabled() {
+		assertNull(FlightRecorder.COMPILE.begin());
+		FlightRecorder.end(null, "nothing", 0, "ok");
+	}
+
+	@Test
+	public void testCompileEvents() throws Exception {
+		final Class<?> recordingClass = load("jdk.jfr.Recording");
+		assumeTrue(recordingClass != null);
+
+		// NB: Custom events are enabled by default.
+		final Object recording = recordingClass.newInstance();
+		recordingClass.getMethod("start").invoke(recording);
+		final Context context =
+			new Context(ScriptService.class, ObjectService.class, RunService.class);
+		final File dump = File.createTempFile("recording-", ".jfr");
+		try {
+			final JavaEngine engine = (JavaEngine) context.getService(
+				ObjectService.class).getObjects(JavaScriptLanguage.class).get(0)
+				.getScriptEngine();
+			engine.getContext().setErrorWriter(null);
+			// NB: A non-JDK import takes the regular route, via MiniMaven.
+			final String source = "package recorded;\n" + //
+				"import org.scijava.util.AppUtils;\n" + //
+				"public class Event {}\n";
+			engine.compile(source);
+			recordingClass.getMethod("stop").invoke(recording);
+			recordingClass.getMethod("dump", load("java.nio.file.Path")).invoke(
+				recording, dump.toPath());
+
+			final List<String> outcomes = new ArrayList<String>();
+			final Set<Object> scripts = new HashSet<Object>();
+			final Method readAllEvents = load("jdk.jfr.consumer.RecordingFile")
+				.getMethod("readAllEvents", load("java.nio.file.Path"));
+			for (final Object event : (List<?>) readAllEvents.invoke(null, dump
+				.toPath()))
+			{
+				final Object type = event.getClass().getMethod("getEventType").invoke(
+					event);
+				final String name = (String) type.getClass().getMethod("getName")
+					.invoke(type);
+				final Object outcome = event.getClass().getMethod("getValue",
+					String.class).invoke(event, "outcome");
+				outcomes.add(name + ": " + outcome);
+				scripts.add(event.getClass().getMethod("getValue", String.class)
+					.invoke(event, "script"));
+			}
+			for (final String name : new String[] { "ClassPathScan", "FakePOM",
+				"Build", "LoadClass", "Compile" })
+			{
+				assertTrue(outcomes.toString(), outcomes.contains("org.scijava.java." +
+					name + ": ok"));
+			}
+			assertEquals(outcomes.toString(), 5, outcomes.size());
+			// all phases are attributed to the script, as in ScriptAccounting
+			assertEquals(Collections.singleton("sha1:" + JavaEngine.digest(source)),
+				scripts);
+		}
+		finally {
+			recordingClass.getMethod("close").invoke(recording);
+			context.dispose();
+			dump.delete();
+		}
+	}
+
+	private static Class<?> load(final String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (final ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.object.ObjectService;
+import org.scijava.run.RunService;
+import org.scijava.script.ScriptService;
+import org.scijava.test.TestUtils;
+import org.scijava.util.FileUtils;
+
+/**
+ * Tests {@link JavaEngineDaemon} and {@link JavaEngineClient}.
+ */
+public class JavaEngineDaemonTest {
+
+	private File dir;
+	private Context context;
+	private JavaEngineDaemon daemon;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = TestUtils.createTemporaryDirectory("daemon-");
+		context =
+			new Context(ScriptService.class, ObjectService.class, RunService.class);
+		daemon = new JavaEngineDaemon(context, new File(dir, "daemon.port"));
+		daemon.start();
+	}
+
+	@After
+	public void tearDown() {
+		daemon.close();
+		context.dispose();
+		FileUtils.deleteRecursively(dir);
+	}
+
+	@Test
+	public void testRun() throws IOException {
+		final File script = write("Greet.java", "" + //
+			"public class Greet {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tSystem.out.println(\"Hello, \" + args[0] + \"!\");\n" + //
+			"\t\tSystem.err.println(\"count: \" + args.length);\n" + //
+			"\t}\n" + //
+			"}\n");
+		for (int i = 0; i < 2; i++) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final ByteArrayOutputStream err = new ByteArrayOutputStream();
+			final int status = run(script, out, err, "daemon", "again");
+			assertEquals(0, status);
+			assertEquals("Hello, daemon!\n", out.toString("UTF-8"));
+			assertTrue(err.toString("UTF-8").contains("count: 2\n"));
+		}
+	}
+
+	@Test
+	public void testCompileError() throws IOException {
+		final File script = write("Broken.java", "" + //
+			"public class Broken {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tundefined();\n" + //
+			"\t}\n" + //
+			"}\n");
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ByteArrayOutputStream err = new ByteArrayOutputStream();
+		assertEquals(1, run(script, out, err));
+		assertEquals("", out.toString("UTF-8"));
+		assertTrue(err.toString("UTF-8").contains("undefined"));
+	}
+
+	@Test
+	public void testPortFilePermissions() throws IOException {
+		final Path portFile = new File(dir, "daemon.port").toPath();
+		assumeTrue(Files.getFileStore(portFile).supportsFileAttributeView(
+			PosixFileAttributeView.class));
+		assertEquals(PosixFilePermissions.fromString("rw-------"), Files
+			.getPosixFilePermissions(portFile));
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		final File portFile = new File(dir, "daemon.port");
+		assertTrue(portFile.exists());
+		daemon.close();
+		assertFalse(portFile.exists());
+	}
+
+	@Test
+	public void testMalformedRequest() throws IOException {
+		final String[] portAndToken = new String(Files.readAllBytes(new File(dir,
+			"daemon.port").toPath()), "UTF-8").trim().split(" ");
+		final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer
+			.parseInt(portAndToken[0]));
+		try {
+			final DataOutputStream out =
+				new DataOutputStream(socket.getOutputStream());
+			out.writeUTF(portAndToken[1]);
+			out.writeUTF(new File(dir, "Missing.java").getPath());
+			out.writeInt(-1);
+			out.flush();
+			// the daemon hangs up instead of failing to allocate the arguments
+			assertEquals(-1, socket.getInputStream().read());
+		}
+		finally {
+			socket.close();
+		}
+
+		// and still serves well-formed requests
+		final File script = write("Fine.java", "" + //
+			"public class Fine {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tSystem.out.println(\"fine\");\n" + //
+			"\t}\n" + //
+			"}\n");
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(0, run(script, out, new ByteArrayOutputStream()));
+		assertEquals("fine\n", out.toString("UTF-8"));
+	}
+
+	private int run(final File script, final ByteArrayOutputStream out,
+		final ByteArrayOutputStream err, final String... args) throws IOException
+	{
+		return JavaEngineClient.run(new File(dir, "daemon.port"), script, args,
+			out, err);
+	}
+
+	private File write(final String name, final String source)
+		throws IOException
+	{
+		final File file = new File(dir, name);
+		final FileWriter writer = new FileWriter(file);
+		writer.write(source);
+		writer.close();
+		return file;
+	}
+
+}
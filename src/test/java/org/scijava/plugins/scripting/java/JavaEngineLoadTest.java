@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.ScriptException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.object.ObjectService;
+import org.scijava.run.RunService;
+import org.scijava.script.ScriptService;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+/**
+ * Puts a {@link JavaEngine} under concurrent load.
+ * <p>
+ * This test is excluded from the regular build; run it via
+ * {@code mvn -Pload-tests test}. The number of threads and the number of
+ * scripts per thread can be set via the {@code loadTest.threads} and
+ * {@code loadTest.iterations} system properties.
+ * </p>
+ * <p>
+ * A third of the scripts is identical (exercising the class cache), a third
+ * needs nothing but the JDK, and a third goes through MiniMaven. Throughput
+ * and latencies are reported; the test fails if any script fails, if
+ * temporary directories or file handles leak, or if more class loaders than
+ * the class cache can account for survive garbage collection.
+ * </p>
+ */
+public class JavaEngineLoadTest {
+
+	private static final int THREADS = Integer.getInteger("loadTest.threads", 4);
+	private static final int ITERATIONS =
+		Integer.getInteger("loadTest.iterations", 30);
+
+	/** Slack for file handles opened lazily by the JVM itself. */
+	private static final long FILE_HANDLE_SLACK = 64;
+
+	/** Classes kept by the engine's class cache, plus the latest one. */
+	private static final int PINNED_CLASS_LOADERS = 32 + 1;
+
+	private Context context;
+	private JavaEngine engine;
+
+	@Before
+	public void setUp() {
+		context =
+			new Context(ScriptService.class, ObjectService.class, RunService.class);
+		final JavaScriptLanguage java = context.getService(ObjectService.class)
+			.getObjects(JavaScriptLanguage.class).get(0);
+		engine = (JavaEngine) java.getScriptEngine();
+		engine.getContext().setErrorWriter(null);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testConcurrentCompiles() throws Exception {
+		// warm up, so that one-time initialization does not count as a leak
+		engine.eval(script("Warm", 0, true));
+		final long fileHandles = getOpenFileHandles();
+
+		final AtomicInteger distinct = new AtomicInteger();
+		final CyclicBarrier start = new CyclicBarrier(THREADS);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+		final long begin = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(new Callable<long[]>() {
+
+				@Override
+				public long[] call() throws Exception {
+					start.await();
+					final long[] latencies = new long[ITERATIONS];
+					for (int i = 0; i < ITERATIONS; i++) {
+						final String source;
+						switch (i % 3) {
+							case 0:
+								source = script("Same", 0, true);
+								break;
+							case 1:
+								source = script("Jdk", distinct.incrementAndGet(), true);
+								break;
+							default:
+								source = script("Maven", distinct.incrementAndGet(), false);
+						}
+						final long before = System.nanoTime();
+						if (i % 2 == 0) engine.eval(source);
+						else if (engine.compile(source) == null) {
+							throw new ScriptException("Could not compile " + source);
+						}
+						latencies[i] = System.nanoTime() - before;
+					}
+					return latencies;
+				}
+			}));
+		}
+		final long[] latencies = new long[THREADS * ITERATIONS];
+		for (int t = 0; t < THREADS; t++) {
+			System.arraycopy(futures.get(t).get(), 0, latencies, t * ITERATIONS,
+				ITERATIONS);
+		}
+		final double seconds = (System.nanoTime() - begin) / 1e9;
+		executor.shutdown();
+
+		Arrays.sort(latencies);
+		final int liveLoaders = countLiveClassLoaders();
+		final int directories = TemporaryWorkspace.getDefault()
+			.getDirectoriesInUse();
+		final long leakedHandles = getOpenFileHandles() - fileHandles;
+		System.out.println(String.format(Locale.ENGLISH,
+			"%d threads x %d scripts: %.1f scripts/s, latency p50 %.1f ms, " +
+				"p99 %.1f ms, max %.1f ms; %d class loader(s) alive after GC, " +
+				"%d temporary director(y/ies) in use, %d file handle(s) leaked",
+			THREADS, ITERATIONS, latencies.length / seconds, //
+			percentile(latencies, 50), percentile(latencies, 99),
+			latencies[latencies.length - 1] / 1e6, liveLoaders, directories,
+			leakedHandles));
+
+		assertEquals(0, directories);
+		assertTrue("Leaked file handles: " + leakedHandles,
+			leakedHandles <= FILE_HANDLE_SLACK);
+		assertTrue("Live class loaders: " + liveLoaders,
+			liveLoaders <= PINNED_CLASS_LOADERS);
+	}
+
+	// -- Helper methods --
+
+	private static String script(final String prefix, final int number,
+		final boolean jdkOnly)
+	{
+		return "package load;\n" + //
+			(jdkOnly ? "import java.util.Arrays;\n" : //
+				"import org.scijava.util.FileUtils;\n") + //
+			"public class " + prefix + number + " {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tif (args.length > 0) throw new IllegalArgumentException();\n" + //
+			"\t}\n" + //
+			"}\n";
+	}
+
+	private int countLiveClassLoaders() throws InterruptedException {
+		final JavaEngineStats stats = engine.getStats();
+		int previous = Integer.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(100);
+			final int live = stats.getLiveClassLoaders();
+			if (live >= previous) return live;
+			previous = live;
+		}
+		return previous;
+	}
+
+	private static double percentile(final long[] sorted, final int percentile) {
+		final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1] / 1e6;
+	}
+
+	private static long getOpenFileHandles() {
+		final OperatingSystemMXBean os =
+			ManagementFactory.getOperatingSystemMXBean();
+		if (!(os instanceof UnixOperatingSystemMXBean)) return 0;
+		return ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+	}
+
+}
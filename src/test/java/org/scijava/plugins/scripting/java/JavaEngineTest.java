@@ -31,7 +31,14 @@
 
 package org.scijava.plugins.scripting.java;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
@@ -39,7 +46,26 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
@@ -47,6 +73,8 @@ import javax.script.ScriptException;
 import org.junit.Before;
 import org.junit.Test;
 import org.scijava.Context;
+import org.scijava.minimaven.BuildEnvironment;
+import org.scijava.minimaven.Coordinate;
 import org.scijava.object.ObjectService;
 import org.scijava.run.RunService;
 import org.scijava.script.AbstractScriptLanguageTest;
@@ -194,6 +222,797 @@ public class JavaEngineTest extends AbstractScriptLanguageTest {
 		assertTrue(result);
 	}
 
+	@Test
+	public void testInvocable() throws Exception {
+		final String source = "" + //
+			"package invocable;\n" + //
+			"public class Calculator {\n" + //
+			"\tpublic static int add(final int a, final int b) {\n" + //
+			"\t\treturn a + b;\n" + //
+			"\t}\n" + //
+			"\tpublic static String add(final String a, final String b) {\n" + //
+			"\t\treturn a + \"+\" + b;\n" + //
+			"\t}\n" + //
+			"\tpublic static String describe(final Object o) {\n" + //
+			"\t\treturn \"object\";\n" + //
+			"\t}\n" + //
+			"\tpublic static String describe(final CharSequence s) {\n" + //
+			"\t\treturn \"chars\";\n" + //
+			"\t}\n" + //
+			"\tpublic static String describe(final String s) {\n" + //
+			"\t\treturn \"string\";\n" + //
+			"\t}\n" + //
+			"\tpublic static String pick(final String a, final Object b) {\n" + //
+			"\t\treturn \"first\";\n" + //
+			"\t}\n" + //
+			"\tpublic static String pick(final Object a, final String b) {\n" + //
+			"\t\treturn \"second\";\n" + //
+			"\t}\n" + //
+			"\tpublic String greet(final String name) {\n" + //
+			"\t\treturn \"Hello, \" + name;\n" + //
+			"\t}\n" + //
+			"\tpublic static void fail() throws Throwable {\n" + //
+			"\t\tthrow new Throwable(\"neither Error nor Exception\");\n" + //
+			"\t}\n" + //
+			"}";
+
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		final Class<?> clazz = engine.compile(source);
+		assertEquals("invocable.Calculator", clazz.getName());
+
+		try {
+			engine.invokeFunction("fail");
+			fail("the Throwable must be reported");
+		}
+		catch (final ScriptException e) {
+			assertEquals("neither Error nor Exception", e.getCause().getMessage());
+		}
+
+		assertEquals(5, engine.invokeFunction("add", 2, 3));
+		assertEquals("a+b", engine.invokeFunction("add", "a", "b"));
+
+		// the most specific overload wins, regardless of declaration order
+		assertEquals("string", engine.invokeFunction("describe", "text"));
+		assertEquals("chars", engine.invokeFunction("describe",
+			new StringBuilder()));
+		assertEquals("object", engine.invokeFunction("describe", 1));
+		assertEquals("first", engine.invokeFunction("pick", "a", 1));
+		try {
+			engine.invokeFunction("pick", "a", "b");
+			fail("ambiguous calls must be reported");
+		}
+		catch (final NoSuchMethodException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Ambiguous"));
+		}
+		assertEquals("Hello, World", engine.invokeMethod(clazz.newInstance(),
+			"greet", "World"));
+
+		try {
+			engine.invokeFunction("greet", "World");
+			fail("instance method must not be invoked as a function");
+		}
+		catch (final NoSuchMethodException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBindings() throws Exception {
+		final String source = "" + //
+			"package bindings;\n" + //
+			"public class Inputs {\n" + //
+			"\tpublic static String name;\n" + //
+			"\tprivate static int count;\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tif (!\"Brain\".equals(name) || count != 2) {\n" + //
+			"\t\t\tthrow new RuntimeException(name + \" x \" + count);\n" + //
+			"\t\t}\n" + //
+			"\t}\n" + //
+			"\tpublic static String describe() {\n" + //
+			"\t\treturn name + \" x \" + count;\n" + //
+			"\t}\n" + //
+			"}";
+
+		final ScriptEngine engine = miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.put("name", "Brain");
+		engine.put("count", 2);
+		engine.put("unrelated", new Object());
+		engine.eval(source);
+		assertEquals("Brain x 2", ((Invocable) engine).invokeFunction("describe"));
+	}
+
+	@Test
+	public void testReservedBindings() throws Exception {
+		final String source = "" + //
+			"package reserved;\n" + //
+			"import java.util.function.Supplier;\n" + //
+			"public class Config implements Supplier<String> {\n" + //
+			"\tstatic int profile = 7;\n" + //
+			"\tstatic String debug = \"unset\";\n" + //
+			"\tstatic String name;\n" + //
+			"\tpublic String get() {\n" + //
+			"\t\treturn profile + \" \" + debug + \" \" + name;\n" + //
+			"\t}\n" + //
+			"}";
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.put(JavaEngine.PROFILE, "fast");
+		engine.put("debug", "false");
+		engine.put("name", "configured");
+		// the engine's own settings are not injected into the script
+		assertEquals("7 unset configured", engine.eval(source));
+	}
+
+	@Test
+	public void testBindingsExtendingJdkClass() throws Exception {
+		final String source = "" + //
+			"package bindings;\n" + //
+			"import java.util.concurrent.Callable;\n" + //
+			"public class Worker extends Thread implements Callable<String> {\n" + //
+			"\tpublic static String greeting;\n" + //
+			"\tpublic Worker() { super(\"worker\"); }\n" + //
+			"\tpublic String call() { return greeting + \", \" + getName(); }\n" + //
+			"}";
+
+		final ScriptEngine engine = miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.put("greeting", "Hello");
+		// must not overwrite the private field of the same name in Thread
+		engine.put("name", "intruder");
+		assertEquals("Hello, worker", engine.eval(source));
+		// methods of JDK classes are dispatched without breaking encapsulation
+		assertEquals("worker", ((Invocable) engine).invokeMethod(new Thread(
+			"worker"), "getName"));
+	}
+
+	@Test
+	public void testProfiles() throws Exception {
+		final String source = "" + //
+			"package profiles;\n" + //
+			"public class Anonymous {\n" + //
+			"\tpublic static String run() throws Exception {\n" + //
+			"\t\treturn new java.util.concurrent.Callable<String>() {\n" + //
+			"\t\t\tpublic String call() {\n" + //
+			"\t\t\t\treturn \"inner\";\n" + //
+			"\t\t\t}\n" + //
+			"\t\t}.call();\n" + //
+			"\t}\n" + //
+			"}";
+
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.put(JavaEngine.PROFILE, "fast");
+		final Class<?> fast = engine.compile(source);
+		assertEquals("inner", engine.invokeFunction("run"));
+		assertSame(fast, engine.compile(source));
+
+		engine.put(JavaEngine.PROFILE, CompilerProfile.DEBUG);
+		final Class<?> debug = engine.compile(source);
+		assertNotSame(fast, debug);
+		assertEquals("inner", engine.invokeFunction("run"));
+	}
+
+	@Test
+	public void testReturnValues() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.put("name", "Pinky");
+		assertEquals("Hello, Pinky", engine.eval("" + //
+			"package results;\n" + //
+			"import java.util.concurrent.Callable;\n" + //
+			"public class Greeting implements Callable<String> {\n" + //
+			"\tprivate String name;\n" + //
+			"\tpublic String call() {\n" + //
+			"\t\treturn \"Hello, \" + name;\n" + //
+			"\t}\n" + //
+			"}"));
+		assertEquals(42, engine.eval("" + //
+			"package results;\n" + //
+			"import java.util.function.Supplier;\n" + //
+			"public class Answer implements Supplier<Integer> {\n" + //
+			"\tpublic Integer get() {\n" + //
+			"\t\treturn 42;\n" + //
+			"\t}\n" + //
+			"}"));
+
+		engine.put(JavaEngine.ENTRY_POINT, "compute");
+		assertEquals(5, engine.eval("" + //
+			"package results;\n" + //
+			"public class Entry {\n" + //
+			"\tpublic static int compute() {\n" + //
+			"\t\treturn \"Pinky\".length();\n" + //
+			"\t}\n" + //
+			"}"));
+
+		final String counter = "" + //
+			"package results;\n" + //
+			"public class Counter {\n" + //
+			"\tprivate int count;\n" + //
+			"\tpublic int compute() {\n" + //
+			"\t\treturn ++count;\n" + //
+			"\t}\n" + //
+			"}";
+		assertEquals(1, engine.eval(counter));
+		assertEquals(1, engine.eval(counter));
+		engine.put(JavaEngine.POOL_INSTANCES, true);
+		assertEquals(1, engine.eval(counter));
+		assertEquals(2, engine.eval(counter));
+	}
+
+	@Test
+	public void testCheck() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		final List<ScriptDiagnostic> broken = engine.check("" + //
+			"package check;\n" + //
+			"public class Broken {\n" + //
+			"\tpublic static int answer() {\n" + //
+			"return fortyTwo;\n" + //
+			"\t}\n" + //
+			"}");
+		assertEquals(1, broken.size());
+		final ScriptDiagnostic error = broken.get(0);
+		assertTrue(error.isError());
+		assertEquals("check/Broken.java", error.getSource());
+		assertEquals(4, error.getLine());
+		assertEquals(8, error.getColumn());
+		assertTrue(error.getMessage(), error.getMessage().contains("fortyTwo"));
+
+		final List<ScriptDiagnostic> fine = engine.check("" + //
+			"package check;\n" + //
+			"import org.scijava.util.AppUtils;\n" + //
+			"public class Fine {\n" + //
+			"\tpublic static Class<?> main() {\n" + //
+			"\t\treturn AppUtils.getMainClass();\n" + //
+			"\t}\n" + //
+			"}");
+		assertTrue(fine.toString(), fine.isEmpty());
+		assertEquals(0, engine.getStats().getCompiles());
+	}
+
+	@Test
+	public void testHotSwap() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.put(JavaEngine.HOT_SWAP, true);
+		final String template = "" + //
+			"package swap;\n" + //
+			"public class Pipeline {\n" + //
+			"\tprivate static int calls;\n" + //
+			"%s" + //
+			"\tpublic static String step() {\n" + //
+			"\t\treturn \"%s \" + ++calls;\n" + //
+			"\t}\n" + //
+			"}";
+		final Class<?> first =
+			engine.compile(String.format(template, "", "first"));
+		assertEquals("first 1", engine.invokeFunction("step"));
+
+		// method bodies changed: same class, same state
+		final Class<?> second =
+			engine.compile(String.format(template, "", "second"));
+		assertSame(first, second);
+		assertEquals("second 2", engine.invokeFunction("step"));
+
+		// the redefined class is cached, so a cache hit needs no redefinition
+		final Field cacheField = JavaEngine.class.getDeclaredField("classCache");
+		cacheField.setAccessible(true);
+		final Map<?, ?> cache = (Map<?, ?>) cacheField.get(engine);
+		assertEquals(Collections.singleton(first), new HashSet<Object>(cache
+			.values()));
+		assertSame(first, engine.compile(String.format(template, "", "second")));
+		assertEquals(2, engine.getStats().getCompiles());
+		assertEquals("second 3", engine.invokeFunction("step"));
+
+		// a field was added: a new class, starting afresh
+		final Class<?> third = engine.compile(String.format(template,
+			"\tprivate static int more;\n", "third"));
+		assertNotSame(first, third);
+		assertEquals("third 1", engine.invokeFunction("step"));
+	}
+
+	@Test
+	public void testBenchmark() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		final StringWriter writer = new StringWriter();
+		engine.getContext().setErrorWriter(writer);
+		engine.put(JavaEngine.BENCHMARK, "2,5");
+		final Object result = engine.eval("" + //
+			"package bench;\n" + //
+			"import java.util.function.Supplier;\n" + //
+			"public class Loop implements Supplier<Integer> {\n" + //
+			"\tprivate static int iterations;\n" + //
+			"\tpublic Integer get() {\n" + //
+			"\t\treturn ++iterations;\n" + //
+			"\t}\n" + //
+			"}");
+		assertTrue(String.valueOf(result), result instanceof BenchmarkResult);
+		final BenchmarkResult benchmark = (BenchmarkResult) result;
+		assertEquals("bench.Loop", benchmark.getName());
+		assertEquals(2, benchmark.getWarmupIterations());
+		assertEquals(5, benchmark.getIterations());
+		assertEquals(7, benchmark.getLastResult());
+		assertTrue(benchmark.getMin() <= benchmark.getMedian());
+		assertTrue(benchmark.getMedian() <= benchmark.getPercentile(90));
+		assertTrue(benchmark.getPercentile(90) <= benchmark.getMax());
+		assertTrue(writer.toString(), writer.toString().contains(
+			"Benchmark bench.Loop: 5 iterations after 2 warm-up iterations"));
+
+		// commands run on SciJava's thread pool: allocations are not measured
+		final Object command = engine.eval("" + //
+			"package bench;\n" + //
+			"import org.scijava.command.Command;\n" + //
+			"import org.scijava.plugin.Plugin;\n" + //
+			"@Plugin(type = Command.class)\n" + //
+			"public class Pooled implements Command {\n" + //
+			"\tpublic void run() {}\n" + //
+			"}");
+		assertTrue(String.valueOf(command), command instanceof BenchmarkResult);
+		assertEquals(-1, ((BenchmarkResult) command).getAllocatedBytes(), 0);
+	}
+
+	@Test
+	public void testScriptAccounting() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		final String heavy = "" + //
+			"package accounting;\n" + //
+			"import java.util.function.Supplier;\n" + //
+			"public class Heavy implements Supplier<Integer> {\n" + //
+			"\tpublic Integer get() {\n" + //
+			"\t\tint sum = 0;\n" + //
+			"\t\tfor (int i = 0; i < 1000; i++) {\n" + //
+			"\t\t\tsum += new byte[65536].length;\n" + //
+			"\t\t}\n" + //
+			"\t\treturn sum;\n" + //
+			"\t}\n" + //
+			"}";
+		final String light = "" + //
+			"package accounting;\n" + //
+			"import java.util.function.Supplier;\n" + //
+			"public class Light implements Supplier<Integer> {\n" + //
+			"\tpublic Integer get() {\n" + //
+			"\t\treturn 1;\n" + //
+			"\t}\n" + //
+			"}";
+		engine.eval(heavy);
+		engine.eval(heavy);
+		engine.eval(light);
+
+		final ScriptAccounting accounting = engine.getStats().getScriptAccounting();
+		assertEquals(2, accounting.size());
+		final ScriptUsage usage = accounting.getHeaviest(1).get(0);
+		assertEquals("sha1:" + JavaEngine.digest(heavy), usage.getIdentity());
+		assertEquals("accounting.Heavy", usage.getClassName());
+		assertEquals(2, usage.getExecutions());
+		assertEquals(0, usage.getFailures());
+		assertTrue(usage.getWallTime() > 0);
+		if (usage.getAllocatedBytes() >= 0) {
+			assertTrue(usage.getAllocatedBytes() >= 2 * 1000 * 65536);
+		}
+
+		// the cheapest script makes room
+		final ScriptAccounting small = new ScriptAccounting(1);
+		small.end(ScriptAccounting.begin(), "first", "First", false);
+		small.end(ScriptAccounting.begin(), "second", "Second", true);
+		assertEquals(1, small.size());
+		assertEquals(1, small.get("second").getFailures());
+
+		// threads started meanwhile are not charged to the script
+		final ScriptAccounting.Execution execution = ScriptAccounting.begin();
+		final CountDownLatch allocated = new CountDownLatch(1);
+		final CountDownLatch accounted = new CountDownLatch(1);
+		final Thread other = new Thread() {
+
+			@Override
+			public void run() {
+				int sum = 0;
+				for (int i = 0; i < 1000; i++) {
+					sum += new byte[65536].length;
+				}
+				if (sum > 0) allocated.countDown();
+				try {
+					accounted.await();
+				}
+				catch (final InterruptedException e) {
+					// NB: Done.
+				}
+			}
+		};
+		other.start();
+		allocated.await();
+		small.end(execution, "idle", "Idle", false);
+		accounted.countDown();
+		other.join();
+		final long idle = small.get("idle").getAllocatedBytes();
+		assertTrue(idle < 1000 * 65536);
+	}
+
+	@Test
+	public void testSpeculativeCompile() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.setSpeculationDelay(200);
+		String source = null;
+		for (int revision = 1; revision <= 5; revision++) {
+			source = "" + //
+				"package speculative;\n" + //
+				"import java.util.function.Supplier;\n" + //
+				"public class Typing implements Supplier<Integer> {\n" + //
+				"\tpublic Integer get() {\n" + //
+				"\t\treturn " + revision + ";\n" + //
+				"\t}\n" + //
+				"}";
+			engine.sourceChanged(source);
+		}
+
+		// only the latest revision is compiled
+		final JavaEngineStats stats = engine.getStats();
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (stats.getCompiles() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		Thread.sleep(400);
+		assertEquals(1, stats.getCompiles());
+
+		// and ready when run
+		assertEquals(5, engine.eval(source));
+		assertEquals(1, stats.getCompiles());
+		assertEquals(1, stats.getCacheHits());
+
+		// compiled with the profile bound when the revision was announced
+		final String fast = source.replace("return 5", "return 6");
+		engine.put(JavaEngine.PROFILE, "fast");
+		engine.sourceChanged(fast);
+		engine.put(JavaEngine.PROFILE, "debug");
+		while (stats.getCompiles() == 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		engine.put(JavaEngine.PROFILE, "fast");
+		assertEquals(6, engine.eval(fast));
+		assertEquals(2, stats.getCompiles());
+		assertEquals(2, stats.getCacheHits());
+	}
+
+	@Test
+	public void testMultiFile() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		final Map<String, String> sources = new LinkedHashMap<String, String>();
+		sources.put("Main.java", "" + //
+			"package unit;\n" + //
+			"import java.util.concurrent.Callable;\n" + //
+			"public class Main implements Callable<String> {\n" + //
+			"\tpublic String call() { return Helper.greet(\"unit\"); }\n" + //
+			"}\n");
+		sources.put("Helper.java", "" + //
+			"package unit;\n" + //
+			"class Helper {\n" + //
+			"\tstatic String greet(final String name) { return \"Hi, \" + name; }\n" + //
+			"}\n");
+		final Class<?> main = engine.compile(sources);
+		assertEquals("unit.Main", main.getName());
+		assertTrue(main.getClassLoader() instanceof MemoryClassLoader);
+		assertSame(main, engine.compile(sources));
+		assertEquals("Hi, unit", engine.eval(sources));
+
+		// helpers needing more than the JDK are built together, too
+		sources.put("Helper.java", "" + //
+			"package unit;\n" + //
+			"import org.scijava.util.FileUtils;\n" + //
+			"class Helper {\n" + //
+			"\tstatic String greet(final String name) {\n" + //
+			"\t\treturn FileUtils.class.getSimpleName() + \", \" + name;\n" + //
+			"\t}\n" + //
+			"}\n");
+		assertEquals("FileUtils, unit", engine.eval(sources));
+
+		// a directory of sources is a unit as well
+		final File dir = TestUtils.createTemporaryDirectory("unit-");
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			final FileWriter writer = new FileWriter(new File(dir, entry.getKey()));
+			writer.write(entry.getValue());
+			writer.close();
+		}
+		engine.put(ScriptEngine.FILENAME, dir.getPath());
+		assertEquals("FileUtils, unit", engine.eval((String) null));
+	}
+
+	@Test
+	public void testPluginIndex() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		final String source = "" + //
+			"package indexed;\n" + //
+			"import org.scijava.command.Command;\n" + //
+			"import org.scijava.plugin.Plugin;\n" + //
+			"@Plugin(type = Command.class)\n" + //
+			"public class %s implements Command {\n" + //
+			"\tpublic void run() {}\n" + //
+			"}\n";
+		// packaged by MiniMaven
+		assertIndexed(engine.compile(String.format(source, "Packaged")));
+		// compiled in memory
+		engine.setProfile(CompilerProfile.DEBUG);
+		assertIndexed(engine.compile(String.format(source, "Direct")));
+	}
+
+	private static void assertIndexed(final Class<?> clazz) throws IOException {
+		final String path = "META-INF/json/org.scijava.plugin.Plugin";
+		boolean found = false;
+		for (final URL url : Collections.list(clazz.getClassLoader().getResources(
+			path)))
+		{
+			final Scanner scanner = new Scanner(url.openStream(), "UTF-8");
+			found |= scanner.useDelimiter("\\A").next().contains(clazz.getName());
+			scanner.close();
+		}
+		assertTrue("Not indexed: " + clazz.getName(), found);
+	}
+
+	@Test
+	public void testWarmUp() throws Exception {
+		final Context context = new Context(ScriptService.class,
+			ObjectService.class, RunService.class);
+		final JavaScriptLanguage java = context.getService(ObjectService.class)
+			.getObjects(JavaScriptLanguage.class).get(0);
+		// fails if warming up failed
+		java.warmUp(true).get(5, TimeUnit.MINUTES);
+		assertTrue(java.getStats().getLastClassPathScanTime() >= 0);
+		// warm-up compiles are not the language's
+		assertEquals(0L, java.getStats().getCompiles());
+		context.dispose();
+	}
+
+	@Test
+	public void testWarmUpService() throws Exception {
+		Context context = new Context(ScriptService.class, ObjectService.class,
+			RunService.class, JavaWarmUpService.class);
+		assertNull(context.getService(JavaWarmUpService.class).getWarmUp());
+		context.dispose();
+
+		System.setProperty(JavaScriptLanguage.WARM_UP, "true");
+		try {
+			context = new Context(ScriptService.class, ObjectService.class,
+				RunService.class, JavaWarmUpService.class);
+			final Future<Void> warmUp =
+				context.getService(JavaWarmUpService.class).getWarmUp();
+			assertNotNull(warmUp);
+			// fails if warming up failed
+			warmUp.get(5, TimeUnit.MINUTES);
+		}
+		finally {
+			System.clearProperty(JavaScriptLanguage.WARM_UP);
+			context.dispose();
+		}
+	}
+
+	@Test
+	public void testStandaloneFile() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		final File dir = TestUtils.createTemporaryDirectory("standalone-");
+		final File file = new File(dir, "Standalone.java");
+		FileWriter writer = new FileWriter(file);
+		writer.write("" + //
+			"public class Standalone {\n" + //
+			"\tpublic static int answer() { return 42; }\n" + //
+			"}\n");
+		writer.close();
+		engine.put(ScriptEngine.FILENAME, file.getPath());
+
+		// stand-alone files are compiled in memory, and cached by content
+		final Class<?> clazz = engine.compile((String) null);
+		assertTrue(clazz.getClassLoader() instanceof MemoryClassLoader);
+		assertSame(clazz, engine.compile((String) null));
+		assertEquals(42, engine.invokeFunction("answer"));
+
+		writer = new FileWriter(file);
+		writer.write("" + //
+			"public class Standalone {\n" + //
+			"\tpublic static int answer() { return 43; }\n" + //
+			"}\n");
+		writer.close();
+		assertNotSame(clazz, engine.compile((String) null));
+		assertEquals(43, engine.invokeFunction("answer"));
+	}
+
+	@Test
+	public void testCompileErrorsReported() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		final StringWriter errors = new StringWriter();
+		engine.getContext().setErrorWriter(errors);
+		assertEquals(null, engine.compile("" + //
+			"package broken;\n" + //
+			"public class Broken {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tundefinedMethod();\n" + //
+			"\t}\n" + //
+			"}\n"));
+		// the messages must be there as soon as the compile returns
+		assertTrue(errors.toString(), errors.toString().contains(
+			"undefinedMethod"));
+	}
+
+	@Test
+	public void testJdkOnly() throws Exception {
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		final Class<?> jdkOnly = engine.compile("" + //
+			"package jdk;\n" + //
+			"import java.util.Collections;\n" + //
+			"public class Only {\n" + //
+			"\tpublic static int size() {\n" + //
+			"\t\treturn Collections.nCopies(3, \"x\").size();\n" + //
+			"\t}\n" + //
+			"}");
+		assertTrue(jdkOnly.getClassLoader() instanceof MemoryClassLoader);
+		assertEquals(3, engine.invokeFunction("size"));
+
+		// fully-qualified references to other classes fall back to MiniMaven
+		final Class<?> qualified = engine.compile("" + //
+			"package jdk;\n" + //
+			"public class Qualified {\n" + //
+			"\tpublic static String name() {\n" + //
+			"\t\treturn org.scijava.util.FileUtils.class.getSimpleName();\n" + //
+			"\t}\n" + //
+			"}");
+		assertTrue(qualified.getClassLoader().getParent() instanceof URLClassLoader);
+		assertEquals("FileUtils", engine.invokeFunction("name"));
+	}
+
+	@Test
+	public void testFakeDependenciesProbeLinearly() {
+		final int count = 5000;
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			files.add(new File("lib" + i, "imglib2.jar"));
+		}
+		files.add(new File("imglib2-1.jar"));
+
+		final int[] probes = { 0 };
+		final BuildEnvironment env = new BuildEnvironment(null, false, false,
+			false)
+		{
+
+			@Override
+			public boolean containsProject(final String groupId,
+				final String artifactId)
+			{
+				probes[0]++;
+				return super.containsProject(groupId, artifactId);
+			}
+		};
+		final Set<String> artifactIds = new HashSet<String>();
+		for (final Coordinate c : JavaEngine.fakeDependencies(env, files)) {
+			assertTrue(c.getArtifactId(), artifactIds.add(c.getArtifactId()));
+		}
+		assertEquals(count + 1, artifactIds.size());
+		assertTrue(artifactIds.contains("imglib2-1-1"));
+		// linear, rather than quadratic, in the number of files
+		assertTrue("" + probes[0], probes[0] <= 2 * files.size());
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		final String source = "" + //
+			"package stats;\n" + //
+			"public class Counted {\n" + //
+			"\tpublic static void main(final String[] args) {}\n" + //
+			"}";
+
+		final Context context =
+			new Context(ScriptService.class, ObjectService.class, RunService.class);
+		final JavaScriptLanguage java = context.getService(ObjectService.class)
+			.getObjects(JavaScriptLanguage.class).get(0);
+		final JavaEngine engine = (JavaEngine) java.getScriptEngine();
+		engine.getContext().setErrorWriter(null);
+		engine.compile(source);
+		engine.eval(source);
+
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName(
+			"org.scijava.plugins.scripting.java:type=JavaEngine,context=" +
+				Integer.toHexString(System.identityHashCode(context)));
+		assertEquals(1L, server.getAttribute(name, "Compiles"));
+		assertEquals(1L, server.getAttribute(name, "Evals"));
+		assertEquals(1L, server.getAttribute(name, "CacheHits"));
+		assertEquals(1L, server.getAttribute(name, "CacheMisses"));
+		assertEquals(1, server.getAttribute(name, "LiveCompiledClasses"));
+		assertTrue((Double) server.getAttribute(name, "CompileTimeMedian") > 0);
+
+		context.dispose();
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testDeclaredDependencies() throws Exception {
+		final String source = "" + //
+			"//DEPS org.scijava:parsington:3.1.0\n" + //
+			"package deps;\n" + //
+			"import org.scijava.parsington.ExpressionParser;\n" + //
+			"public class Parse {\n" + //
+			"\tpublic static String parse(final String expression) {\n" + //
+			"\t\treturn new ExpressionParser().parsePostfix(expression).toString();\n" + //
+			"\t}\n" + //
+			"}";
+
+		final JavaEngine engine = (JavaEngine) miniMaven();
+		engine.getContext().setErrorWriter(null);
+		engine.compile(source);
+		assertEquals("[1, 2, +]", engine.invokeFunction("parse", "1 + 2"));
+	}
+
+	@Test
+	public void testMultiModule() throws Exception {
+		final File dir = TestUtils.createTemporaryDirectory("reactor-");
+		writePom(dir, "root", "" + //
+			" <packaging>pom</packaging>\n" + //
+			" <modules>\n" + //
+			"  <module>app</module>\n" + //
+			"  <module>base</module>\n" + //
+			"  <module>other</module>\n" + //
+			" </modules>\n");
+		writePom(new File(dir, "base"), "base", "");
+		writeFiles(new File(dir, "base"), "reactor/Base.java", "" + //
+			"package reactor;\n" + //
+			"public class Base {\n" + //
+			"\tpublic static String message() { return \"from base\"; }\n" + //
+			"}\n");
+		writePom(new File(dir, "other"), "other", "");
+		writeFiles(new File(dir, "other"), "reactor/Other.java", "" + //
+			"package reactor;\n" + //
+			"public class Other {}\n");
+		writePom(new File(dir, "app"), "app", "" + //
+			" <dependencies>\n" + //
+			"  <dependency>\n" + //
+			"   <groupId>org.scijava.scripting.java</groupId>\n" + //
+			"   <artifactId>base</artifactId>\n" + //
+			"   <version>1.0.0</version>\n" + //
+			"  </dependency>\n" + //
+			" </dependencies>\n" + //
+			" <build>\n" + //
+			"  <plugins>\n" + //
+			"   <plugin>\n" + //
+			"    <artifactId>maven-jar-plugin</artifactId>\n" + //
+			"    <configuration>\n" + //
+			"     <archive>\n" + //
+			"      <manifest>\n" + //
+			"       <mainClass>reactor.App</mainClass>\n" + //
+			"      </manifest>\n" + //
+			"     </archive>\n" + //
+			"    </configuration>\n" + //
+			"   </plugin>\n" + //
+			"  </plugins>\n" + //
+			" </build>\n");
+		writeFiles(new File(dir, "app"), "reactor/App.java", "" + //
+			"package reactor;\n" + //
+			"public class App {\n" + //
+			"\tpublic static void main(final String[] args) {\n" + //
+			"\t\tthrow new RuntimeException(Base.message());\n" + //
+			"\t}\n" + //
+			"}\n");
+
+		// every module waits for a slot of its own, not for the caller's
+		final CompileScheduler scheduler = CompileScheduler.getDefault();
+		final int maxConcurrent = scheduler.getMaxConcurrent();
+		scheduler.setMaxConcurrent(1);
+		String message = null;
+		try {
+			evalJava(new File(dir, "pom.xml"));
+		}
+		catch (final ScriptException e) {
+			message = e.getCause().getCause().getMessage();
+		}
+		finally {
+			scheduler.setMaxConcurrent(maxConcurrent);
+		}
+		assertEquals("from base", message);
+		assertEquals(0, scheduler.getRunning());
+		assertTrue(new File(dir, "base/target/base-1.0.0.jar").exists());
+		assertTrue(new File(dir, "other/target/other-1.0.0.jar").exists());
+		assertTrue(new File(dir, "app/target/app-1.0.0.jar").exists());
+	}
+
 	// -- helper functions
 
 	private File makeMinimalProject() throws IOException {
@@ -257,6 +1076,23 @@ public class JavaEngineTest extends AbstractScriptLanguageTest {
 		return dir;
 	}
 
+	private void writePom(final File dir, final String artifactId,
+		final String extra) throws IOException
+	{
+		assertTrue(dir.isDirectory() || dir.mkdirs());
+		final FileWriter pom = new FileWriter(new File(dir, "pom.xml"));
+		pom.write("" + //
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + //
+			"<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" + //
+			" <modelVersion>4.0.0</modelVersion>\n" + //
+			" <groupId>org.scijava.scripting.java</groupId>\n" + //
+			" <artifactId>" + artifactId + "</artifactId>\n" + //
+			" <version>1.0.0</version>\n" + //
+			extra + //
+			"</project>\n");
+		pom.close();
+	}
+
 	private void writeFiles(final File dir, final String... args)
 		throws IOException
 	{
@@ -32,10 +32,15 @@
 package org.scijava.plugins.scripting.java;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Set;
@@ -43,6 +48,8 @@ import java.util.TreeSet;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import javax.script.ScriptEngine;
+
 import org.junit.Test;
 import org.scijava.test.TestUtils;
 import org.scijava.util.FileUtils;
@@ -65,6 +72,59 @@ public class MakeJarTest {
 				"pom.xml", "src/main/java/Dummy.java");
 	}
 
+	@Test
+	public void testRunJar() throws Exception {
+		final StringWriter writer = new StringWriter();
+		final JavaEngine engine = new JavaEngine();
+		final File file = FileUtils.urlToFile(getClass().getResource("/Dummy.java"));
+		final File tmpDir = TestUtils.createTemporaryDirectory("jar-test-");
+		final File output = new File(tmpDir, "test.jar");
+		engine.makeJar(file, false, output, writer);
+
+		engine.put(ScriptEngine.FILENAME, output.getPath());
+		final Class<?> clazz = engine.compile("");
+		assertEquals("Dummy", clazz.getName());
+		assertSame(clazz, engine.compile(""));
+
+		// unpacked into a class directory, of a Maven project
+		final File classes = new File(tmpDir, "target/classes");
+		assertTrue(classes.mkdirs());
+		final JarFile jar = new JarFile(output);
+		extract(jar, "Dummy.class", new File(classes, "Dummy.class"));
+		extract(jar, "META-INF/maven/org.scijava.scripting.java/Dummy/pom.xml",
+			new File(tmpDir, "pom.xml"));
+		jar.close();
+		engine.put(ScriptEngine.FILENAME, classes.getPath());
+		final Class<?> unpacked = engine.compile("");
+		assertEquals("Dummy", unpacked.getName());
+		assertNotSame(clazz, unpacked);
+		assertSame(unpacked, engine.compile(""));
+
+		// any modified file of the class directory invalidates the cache
+		final File resource = new File(classes, "dummy.properties");
+		final OutputStream out = new FileOutputStream(resource);
+		out.write("greeting=Hello\n".getBytes("UTF-8"));
+		out.close();
+		assertTrue(resource.setLastModified(new File(classes, "Dummy.class")
+			.lastModified() + 60000));
+		assertNotSame(unpacked, engine.compile(""));
+	}
+
+	private void extract(final JarFile jar, final String path,
+		final File target) throws IOException
+	{
+		final InputStream in = jar.getInputStream(jar.getEntry(path));
+		final OutputStream out = new FileOutputStream(target);
+		final byte[] buffer = new byte[16384];
+		for (;;) {
+			final int count = in.read(buffer);
+			if (count < 0) break;
+			out.write(buffer, 0, count);
+		}
+		in.close();
+		out.close();
+	}
+
 	private void assertJarEntries(File output, String... paths) throws IOException {
 		final Set<String> set = new TreeSet<String>(Arrays.asList(paths));
 		final JarFile jar = new JarFile(output);
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+import org.scijava.minimaven.BuildEnvironment;
+import org.scijava.minimaven.MavenProject;
+import org.scijava.test.TestUtils;
+import org.scijava.util.FileUtils;
+
+/**
+ * Tests {@link ProjectCache}.
+ */
+public class ProjectCacheTest {
+
+	/**
+	 * Guards the reflective reset of MiniMaven's memoized state: should a
+	 * MiniMaven update rename these fields, projects would silently stop being
+	 * cached.
+	 */
+	@Test
+	public void testMemoizedStateAccessible() throws Exception {
+		final Field upToDate = MavenProject.class.getDeclaredField("upToDate");
+		MavenProject.class.getDeclaredField("jarUpToDate");
+		assertTrue(MavenProject.class.getDeclaredField("built")
+			.getType() == boolean.class);
+		boolean unknown = false;
+		for (final Object constant : upToDate.getType().getEnumConstants()) {
+			unknown |= "UNKNOWN".equals(constant.toString());
+		}
+		assertTrue(unknown);
+		assertTrue(ProjectCache.isEnabled());
+	}
+
+	@Test
+	public void testNestedModules() throws Exception {
+		final File dir = TestUtils.createTemporaryDirectory("nested-");
+		try {
+			writePom(new File(dir, "pom.xml"), "root", "pom", "outer");
+			writePom(new File(dir, "outer/pom.xml"), "outer", "pom", "inner");
+			final File inner = new File(dir, "outer/inner/pom.xml");
+			writePom(inner, "inner", "jar", null);
+
+			final File pom = new File(dir, "pom.xml");
+			final ProjectCache.CachedProject first =
+				ProjectCache.acquire(pom, null, false, false);
+			first.release();
+			assertSame(first, ProjectCache.acquire(pom, null, false, false));
+			first.release();
+
+			// a module of a module changed: parse afresh
+			assertTrue(inner.setLastModified(inner.lastModified() - 10000));
+			final ProjectCache.CachedProject second =
+				ProjectCache.acquire(pom, null, false, false);
+			second.release();
+			assertNotSame(first, second);
+		}
+		finally {
+			FileUtils.deleteRecursively(dir);
+		}
+	}
+
+	/**
+	 * Guards the synchronization of the caches that the modules of a
+	 * {@link ReactorBuild} share.
+	 */
+	@Test
+	public void testSynchronizedCaches() throws Exception {
+		final BuildEnvironment env =
+			new ProjectCache.SynchronizedBuildEnvironment(System.err, false, false);
+		for (final String name : new String[] { "localPOMCache", "file2pom",
+			"excludedFromMultiProjects" })
+		{
+			final Field field = BuildEnvironment.class.getDeclaredField(name);
+			field.setAccessible(true);
+			final Object cache = field.get(env);
+			assertTrue(name, cache.getClass().getName().contains("Synchronized"));
+		}
+	}
+
+	private static void writePom(final File file, final String artifactId,
+		final String packaging, final String module) throws IOException
+	{
+		assertTrue(file.getParentFile().isDirectory() || file.getParentFile()
+			.mkdirs());
+		final FileWriter writer = new FileWriter(file);
+		writer.write("<project>\n" + //
+			"\t<modelVersion>4.0.0</modelVersion>\n" + //
+			"\t<groupId>test</groupId>\n" + //
+			"\t<artifactId>" + artifactId + "</artifactId>\n" + //
+			"\t<version>1.0.0</version>\n" + //
+			"\t<packaging>" + packaging + "</packaging>\n" + //
+			(module == null ? "" : "\t<modules><module>" + module +
+				"</module></modules>\n") + //
+			"</project>\n");
+		writer.close();
+	}
+
+}
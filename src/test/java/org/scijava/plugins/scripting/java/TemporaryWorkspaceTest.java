@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * JSR-223-compliant Java scripting language plugin.
+ * %%
+ * Copyright (C) 2008 - 2026 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+
+package org.scijava.plugins.scripting.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.test.TestUtils;
+import org.scijava.util.FileUtils;
+
+/**
+ * Tests {@link TemporaryWorkspace}.
+ */
+public class TemporaryWorkspaceTest {
+
+	private File parent;
+	private TemporaryWorkspace workspace;
+
+	@Before
+	public void setUp() throws IOException {
+		parent = TestUtils.createTemporaryDirectory("workspace-");
+	}
+
+	@After
+	public void tearDown() {
+		if (workspace != null) workspace.close();
+		FileUtils.deleteRecursively(parent);
+	}
+
+	@Test
+	public void testReuse() throws IOException {
+		workspace = new TemporaryWorkspace(parent, Long.MAX_VALUE);
+		final File first = workspace.acquire();
+		assertTrue(workspace.contains(first));
+		assertEquals(1, workspace.getDirectoriesInUse());
+		touch(new File(first, "src/main/java/Hello.java"));
+
+		workspace.release(first);
+		assertEquals(0, workspace.getDirectoriesInUse());
+		assertEquals(0, workspace.getPendingDirectories());
+
+		final File second = workspace.acquire();
+		assertEquals(first, second);
+		assertEquals(0, second.list().length);
+		workspace.release(second);
+	}
+
+	@Test
+	public void testOrphans() throws Exception {
+		final File orphan = new File(parent, "scijava-java-orphan");
+		touch(new File(orphan, ".lock"));
+		touch(new File(orphan, "project-1/pom.xml"));
+
+		workspace = new TemporaryWorkspace(parent, Long.MAX_VALUE);
+		for (int i = 0; i < 100 && orphan.exists(); i++) {
+			Thread.sleep(50);
+		}
+		assertFalse(orphan.exists());
+	}
+
+	@Test
+	public void testProbingKeepsLocks() throws Exception {
+		workspace = new TemporaryWorkspace(parent, Long.MAX_VALUE);
+		final File directory = workspace.acquire();
+		final File marker = new File(directory.getParentFile(), ".lock");
+		workspace.release(directory);
+		assertTrue(marker.exists());
+
+		// as done by the other workspaces of this JVM
+		assertFalse(TemporaryWorkspace.isAbandoned(marker));
+
+		// the lock must still be held as seen from another JVM
+		final Process process = new ProcessBuilder(new File(System.getProperty(
+			"java.home"), "bin/java").getPath(), "-cp", System.getProperty(
+				"java.class.path"), getClass().getName(), marker.getPath())
+					.redirectErrorStream(true).start();
+		process.getInputStream().close();
+		assertEquals(0, process.waitFor());
+	}
+
+	/**
+	 * Exits with status 0 if the given file is locked by another process.
+	 * 
+	 * @param args the path of the file
+	 */
+	public static void main(final String... args) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(args[0], "rw");
+		final FileLock lock = file.getChannel().tryLock();
+		System.exit(lock == null ? 0 : 1);
+	}
+
+	private static void touch(final File file) throws IOException {
+		assertTrue(file.getParentFile().isDirectory() || file.getParentFile()
+			.mkdirs());
+		new FileWriter(file).close();
+	}
+}